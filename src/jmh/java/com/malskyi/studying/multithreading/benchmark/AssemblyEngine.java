@@ -0,0 +1,42 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Simplified model of the assembly line of {@code AssemblyDemo}: every stage has a fixed number of workers, connected
+ * by bounded queues. The demo's StagePool autoscaling, batching, scheduling and resilient stages are left out.
+ */
+final class AssemblyEngine extends ThreadedEngine {
+    private final BlockingQueue<Job> toInit;
+
+    AssemblyEngine(ContainerStages stages, int threadsPerStage, int queueCapacity) {
+        this.toInit = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Job> initializedToBuild = new ArrayBlockingQueue<>(queueCapacity);
+        final BlockingQueue<Job> builtToDeploy = new ArrayBlockingQueue<>(queueCapacity);
+        startWorkers("InitWorker", threadsPerStage, () -> {
+            final Job job = toInit.take();
+            job.container = stages.init();
+            initializedToBuild.put(job);
+        });
+        startWorkers("BuildWorker", threadsPerStage, () -> {
+            final Job job = initializedToBuild.take();
+            stages.build(job.container);
+            builtToDeploy.put(job);
+        });
+        startWorkers("DeployWorker", threadsPerStage, () -> {
+            final Job job = builtToDeploy.take();
+            job.done.complete(stages.deploy(job.container));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Container> submit() throws InterruptedException {
+        final Job job = new Job();
+        toInit.put(job);
+        return job.done;
+    }
+}
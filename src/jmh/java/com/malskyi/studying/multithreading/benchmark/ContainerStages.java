@@ -0,0 +1,61 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerStatus;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The init -> build -> deploy workload shared by all benchmarked strategies.
+ * Stage costs keep the 1:3:6 ratio of the demos. A positive delay sleeps, standing in for blocking I/O;
+ * a zero delay burns CPU instead, which gives the CPU-bound variant of the same workload.
+ */
+final class ContainerStages {
+    private static final long CPU_TOKENS_PER_WEIGHT = 1_000L;
+    private static final int INIT_WEIGHT = 1;
+    private static final int BUILD_WEIGHT = 3;
+    private static final int DEPLOY_WEIGHT = 6;
+
+    private final AtomicInteger counter = new AtomicInteger(1);
+    private final long delayMicros;
+
+    ContainerStages(long delayMicros) {
+        this.delayMicros = delayMicros;
+    }
+
+    Container init() throws InterruptedException {
+        final Container container = new Container(counter.getAndIncrement());
+        work(INIT_WEIGHT);
+        container.setInitializedBy(String.format("[%s] init ", Thread.currentThread().getName()));
+        container.setContainerStatus(ContainerStatus.INITIALIZED);
+        return container;
+    }
+
+    Container build(Container container) throws InterruptedException {
+        work(BUILD_WEIGHT);
+        container.setBuildBy(String.format("[%s] build ", Thread.currentThread().getName()));
+        container.setContainerStatus(ContainerStatus.BUILT);
+        return container;
+    }
+
+    Container deploy(Container container) throws InterruptedException {
+        work(DEPLOY_WEIGHT);
+        container.setDeployedBy(String.format("[%s] deploy ", Thread.currentThread().getName()));
+        container.setContainerStatus(ContainerStatus.DEPLOYED);
+        return container;
+    }
+
+    Container runAll() throws InterruptedException {
+        return deploy(build(init()));
+    }
+
+    private void work(int weight) throws InterruptedException {
+        if (delayMicros > 0) {
+            Thread.sleep(Duration.ofNanos(delayMicros * weight * 1_000L));
+        } else {
+            Blackhole.consumeCPU(CPU_TOKENS_PER_WEIGHT * weight);
+        }
+    }
+}
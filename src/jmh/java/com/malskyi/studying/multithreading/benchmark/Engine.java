@@ -0,0 +1,16 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A running pipeline strategy. Each submitted job is one container travelling through all stages;
+ * the returned future completes once the container is deployed.
+ */
+interface Engine extends AutoCloseable {
+    CompletableFuture<Container> submit() throws InterruptedException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,45 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simplified model of the PARALLEL_STREAM engine of {@code FunctionalDemo}: each container is a task on a dedicated
+ * {@link ForkJoinPool} running init -> build -> deploy, which is what every element of the demo's parallel
+ * stream executes. The pool's own work queues take the place of a bounded hand-off. The demo's COMPLETABLE_FUTURE
+ * engine, its in-flight limit and resilient stages are not modelled.
+ */
+final class FunctionalEngine implements Engine {
+    private final ContainerStages stages;
+    private final ForkJoinPool pool;
+
+    FunctionalEngine(ContainerStages stages, int threads) {
+        this.stages = stages;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    @Override
+    public CompletableFuture<Container> submit() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return stages.runAll();
+            } catch (InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        }, pool);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        try {
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
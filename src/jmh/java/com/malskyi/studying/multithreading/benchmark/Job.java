@@ -0,0 +1,13 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Hand-off item of the queue based strategies: the container built so far plus its completion signal.
+ */
+final class Job {
+    final CompletableFuture<Container> done = new CompletableFuture<>();
+    Container container;
+}
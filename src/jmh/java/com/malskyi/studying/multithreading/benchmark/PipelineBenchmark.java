@@ -0,0 +1,97 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.producer_consumer.BufferType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the container pipeline strategies on the same workload.
+ * PIPELINE drives the real {@link com.malskyi.studying.multithreading.pipeline.Pipeline}; every other strategy is a
+ * simplified model of its demo's threading, without the demo's StagePool autoscaling, batching, resilient stages,
+ * CompletableFuture engine or metrics. Their numbers compare the hand-off patterns, not the demos as they ship.
+ * One operation is one container travelling init -> build -> deploy, so {@code thrpt} reads as deployed containers
+ * per second and {@code sample} gives the per-container latency distribution (p50, p99, ...).
+ * The benchmark threads are the offered load; run with {@code -prof gc} (as {@link #main} does) for allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PipelineBenchmark {
+
+    public enum Strategy {
+        WORKERS, ASSEMBLY, PIPELINE, FUNCTIONAL, PRODUCER_CONSUMER, PRODUCER_CONSUMER_RING
+    }
+
+    @Param({"WORKERS", "ASSEMBLY", "PIPELINE", "FUNCTIONAL", "PRODUCER_CONSUMER", "PRODUCER_CONSUMER_RING"})
+    private Strategy strategy;
+
+    /**
+     * Worker threads per stage (assembly line and pipeline) or in total (every other strategy).
+     */
+    @Param({"1", "3", "12"})
+    private int threads;
+
+    /**
+     * Init stage delay; build and deploy take 3x and 6x as long. Zero makes the stages CPU-bound.
+     */
+    @Param({"0", "100", "1000"})
+    private long stageDelayMicros;
+
+    @Param({"1", "100"})
+    private int queueCapacity;
+
+    private Engine engine;
+
+    @Setup(Level.Trial)
+    public void start() {
+        final ContainerStages stages = new ContainerStages(stageDelayMicros);
+        engine = switch (strategy) {
+            case WORKERS -> new WorkersEngine(stages, threads, queueCapacity);
+            case ASSEMBLY -> new AssemblyEngine(stages, threads, queueCapacity);
+            case PIPELINE -> new PipelineEngine(stages, threads, queueCapacity);
+            case FUNCTIONAL -> new FunctionalEngine(stages, threads);
+            case PRODUCER_CONSUMER -> new ProducerConsumerEngine(stages, threads, queueCapacity, BufferType.SYNCHRONIZED);
+            case PRODUCER_CONSUMER_RING -> new ProducerConsumerEngine(stages, threads, queueCapacity, BufferType.RING_PARK);
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        engine.close();
+    }
+
+    @Benchmark
+    public Container container() throws InterruptedException {
+        return engine.submit().join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PipelineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,49 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ExecutionMode;
+import com.malskyi.studying.multithreading.pipeline.Pipeline;
+import com.malskyi.studying.multithreading.pipeline.QueueType;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The {@link Pipeline} of {@code PipelineDemo} itself: one stage per step, each with its own workers and bounded
+ * queue, and a sink completing the job. Unlike the other engines this is the production code, not a model of it.
+ */
+final class PipelineEngine implements Engine {
+    private final Pipeline<Job> pipeline;
+
+    PipelineEngine(ContainerStages stages, int threadsPerStage, int queueCapacity) {
+        this.pipeline = Pipeline.<Job>builder()
+                .name("PipelineBenchmark")
+                .executionMode(ExecutionMode.PLATFORM)
+                .stage("InitWorker", threadsPerStage, QueueType.ARRAY, queueCapacity, job -> {
+                    job.container = stages.init();
+                    return job;
+                })
+                .stage("BuildWorker", threadsPerStage, QueueType.ARRAY, queueCapacity, job -> {
+                    stages.build(job.container);
+                    return job;
+                })
+                .stage("DeployWorker", threadsPerStage, QueueType.ARRAY, queueCapacity, job -> {
+                    stages.deploy(job.container);
+                    return job;
+                })
+                .sink(job -> job.done.complete(job.container))
+                .build();
+        pipeline.start();
+    }
+
+    @Override
+    public CompletableFuture<Container> submit() throws InterruptedException {
+        final Job job = new Job();
+        pipeline.submit(job);
+        return job.done;
+    }
+
+    @Override
+    public void close() {
+        pipeline.close();
+    }
+}
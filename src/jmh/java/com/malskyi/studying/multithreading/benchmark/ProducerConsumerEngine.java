@@ -0,0 +1,30 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.producer_consumer.BufferType;
+import com.malskyi.studying.multithreading.producer_consumer.MessageBuffer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Simplified model of {@code ProducerConsumerDemo}: benchmark threads produce into the demo's own
+ * {@link MessageBuffer}, consumers take jobs out and run all stages.
+ */
+final class ProducerConsumerEngine extends ThreadedEngine {
+    private final MessageBuffer<Job> buffer;
+
+    ProducerConsumerEngine(ContainerStages stages, int consumers, int capacity, BufferType bufferType) {
+        this.buffer = bufferType.create(capacity);
+        startWorkers("Consumer", consumers, () -> {
+            final Job job = buffer.get();
+            job.done.complete(stages.runAll());
+        });
+    }
+
+    @Override
+    public CompletableFuture<Container> submit() {
+        final Job job = new Job();
+        buffer.put(job);
+        return job.done;
+    }
+}
@@ -0,0 +1,51 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base for strategies that own plain worker threads. Workers run until {@link #close()} interrupts them.
+ */
+abstract class ThreadedEngine implements Engine {
+    private final List<Thread> threads = new ArrayList<>();
+
+    @FunctionalInterface
+    interface WorkerLoop {
+        void iterate() throws InterruptedException;
+    }
+
+    protected final void startWorkers(String name, int count, WorkerLoop loop) {
+        for (int i = 1; i <= count; i++) {
+            final Thread thread = new Thread(() -> {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        loop.iterate();
+                    }
+                } catch (InterruptedException e) {
+                    // closed while waiting for work
+                } catch (RuntimeException e) {
+                    // MessageBuffer rethrows interrupts as RuntimeException
+                    if (!(e.getCause() instanceof InterruptedException)) {
+                        throw e;
+                    }
+                }
+            }, String.format("%s-%s", name, i));
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    @Override
+    public void close() {
+        threads.forEach(Thread::interrupt);
+        for (Thread thread : threads) {
+            try {
+                thread.join(1000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
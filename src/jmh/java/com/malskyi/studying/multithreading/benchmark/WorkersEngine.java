@@ -0,0 +1,30 @@
+package com.malskyi.studying.multithreading.benchmark;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Simplified model of the parallel workers of {@code WorkersDemo}: a delegator queue hands each job to one worker,
+ * which carries the container through all three stages.
+ */
+final class WorkersEngine extends ThreadedEngine {
+    private final BlockingQueue<Job> jobs;
+
+    WorkersEngine(ContainerStages stages, int threads, int queueCapacity) {
+        this.jobs = new ArrayBlockingQueue<>(queueCapacity);
+        startWorkers("Worker", threads, () -> {
+            final Job job = jobs.take();
+            job.done.complete(stages.runAll());
+        });
+    }
+
+    @Override
+    public CompletableFuture<Container> submit() throws InterruptedException {
+        final Job job = new Job();
+        jobs.put(job);
+        return job.done;
+    }
+}
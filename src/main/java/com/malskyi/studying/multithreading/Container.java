@@ -10,9 +10,25 @@ public class Container {
     private String initializedBy;
     private String buildBy;
     private String deployedBy;
+    /**
+     * {@link System#nanoTime()} when the container was last put into a hand-off queue, 0 if never.
+     */
+    private long queuedAt;
+    /**
+     * Scheduling priority, higher is served first by a priority scheduled stage. 0 for bulk containers.
+     */
+    private int priority;
+    /**
+     * {@link System#nanoTime()} after which the container is no longer worth processing, 0 if it never expires.
+     */
+    private long deadline;
 
     public Container(int id) {
         this.name = String.format("Container-%s", id);
         this.containerStatus = ContainerStatus.EMPTY;
     }
+
+    public boolean isExpired(long now) {
+        return deadline != 0 && now - deadline > 0;
+    }
 }
\ No newline at end of file
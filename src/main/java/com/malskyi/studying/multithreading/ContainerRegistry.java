@@ -0,0 +1,110 @@
+package com.malskyi.studying.multithreading;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Columnar alternative to one {@link Container} object per container, for runs with millions of them.
+ * A container is just an id indexing preallocated primitive columns: its status as a byte and the workers that moved
+ * it through each stage as ints. Workers register their attribution label once, so nothing is allocated per container.
+ * Names and attributions are only built when read through a {@link ContainerView}.
+ * <p>
+ * Each container is advanced by one worker at a time. Its attribution is written before the status is published
+ * with release semantics, so anyone who reads the status also sees who set it.
+ */
+public final class ContainerRegistry {
+    private static final VarHandle STATUSES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final ContainerStatus[] STATUS_VALUES = ContainerStatus.values();
+
+    private final byte[] statuses;
+    private final int[] initializedBy;
+    private final int[] buildBy;
+    private final int[] deployedBy;
+    private final AtomicInteger size = new AtomicInteger();
+    private final List<String> workers = new ArrayList<>();
+
+    public ContainerRegistry(int capacity) {
+        this.statuses = new byte[capacity];
+        this.initializedBy = new int[capacity];
+        this.buildBy = new int[capacity];
+        this.deployedBy = new int[capacity];
+    }
+
+    /**
+     * @param attribution label stored as initializedBy/buildBy/deployedBy of containers this worker advances
+     * @return worker handle to pass to {@link #advance(int, ContainerStatus, int)}
+     */
+    public synchronized int registerWorker(String attribution) {
+        workers.add(attribution);
+        return workers.size();
+    }
+
+    /**
+     * @return id of a new {@link ContainerStatus#EMPTY} container, ids start from 1 as {@link Container} names do
+     */
+    public int create() {
+        final int index = size.getAndIncrement();
+        if (index >= statuses.length) {
+            size.decrementAndGet();
+            throw new IllegalStateException("Registry is full, capacity " + statuses.length);
+        }
+        return index + 1;
+    }
+
+    public void advance(int id, ContainerStatus status, int worker) {
+        final int index = id - 1;
+        switch (status) {
+            case INITIALIZED -> initializedBy[index] = worker;
+            case BUILT -> buildBy[index] = worker;
+            case DEPLOYED -> deployedBy[index] = worker;
+            default -> {
+            }
+        }
+        STATUSES.setRelease(statuses, index, (byte) status.ordinal());
+    }
+
+    public ContainerStatus status(int id) {
+        return STATUS_VALUES[(byte) STATUSES.getAcquire(statuses, id - 1)];
+    }
+
+    public int size() {
+        return Math.min(size.get(), statuses.length);
+    }
+
+    /**
+     * Scans the status column, one byte per container.
+     */
+    public int count(ContainerStatus status) {
+        final int size = size();
+        int count = 0;
+        for (int index = 0; index < size; index++) {
+            if ((byte) STATUSES.getAcquire(statuses, index) == status.ordinal()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public ContainerView view(int id) {
+        return new ContainerView(this, id);
+    }
+
+    String initializedBy(int id) {
+        return worker(initializedBy[id - 1]);
+    }
+
+    String buildBy(int id) {
+        return worker(buildBy[id - 1]);
+    }
+
+    String deployedBy(int id) {
+        return worker(deployedBy[id - 1]);
+    }
+
+    private synchronized String worker(int handle) {
+        return handle == 0 ? null : workers.get(handle - 1);
+    }
+}
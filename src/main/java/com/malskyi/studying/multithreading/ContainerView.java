@@ -0,0 +1,35 @@
+package com.malskyi.studying.multithreading;
+
+/**
+ * Read-only {@link Container}-like view of one container in a {@link ContainerRegistry}.
+ * Holds nothing but the id, every getter reads the registry columns.
+ */
+public record ContainerView(ContainerRegistry registry, int id) {
+
+    public String getName() {
+        return "Container-" + id;
+    }
+
+    public ContainerStatus getContainerStatus() {
+        return registry.status(id);
+    }
+
+    public String getInitializedBy() {
+        return registry.initializedBy(id);
+    }
+
+    public String getBuildBy() {
+        return registry.buildBy(id);
+    }
+
+    public String getDeployedBy() {
+        return registry.deployedBy(id);
+    }
+
+    @Override
+    public String toString() {
+        return "ContainerView(name=" + getName() + ", containerStatus=" + getContainerStatus()
+                + ", initializedBy=" + getInitializedBy() + ", buildBy=" + getBuildBy()
+                + ", deployedBy=" + getDeployedBy() + ")";
+    }
+}
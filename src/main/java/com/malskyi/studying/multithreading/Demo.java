@@ -0,0 +1,50 @@
+package com.malskyi.studying.multithreading;
+
+import com.malskyi.studying.multithreading.assembly_line.AssemblyDemo;
+import com.malskyi.studying.multithreading.functional.FunctionalDemo;
+import com.malskyi.studying.multithreading.parallel_workers.WorkersDemo;
+import com.malskyi.studying.multithreading.pipeline.PipelineDemo;
+import com.malskyi.studying.multithreading.producer_consumer.ProducerConsumerDemo;
+import com.malskyi.studying.multithreading.reactive.ReactiveDemo;
+
+/**
+ * The demos that can run inside the application, by the name used in configuration and URLs.
+ */
+public enum Demo {
+    WORKERS("workers"),
+    ASSEMBLY("assembly"),
+    FUNCTIONAL("functional"),
+    PRODUCER_CONSUMER("producer-consumer"),
+    PIPELINE("pipeline"),
+    REACTIVE("reactive");
+
+    private final String id;
+
+    Demo(String id) {
+        this.id = id;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public static Demo of(String id) {
+        for (Demo demo : values()) {
+            if (demo.id.equals(id)) {
+                return demo;
+            }
+        }
+        throw new IllegalArgumentException("Unknown demo: " + id);
+    }
+
+    public void run(RunControl control) throws InterruptedException {
+        switch (this) {
+            case WORKERS -> WorkersDemo.run(control);
+            case ASSEMBLY -> AssemblyDemo.run(control);
+            case FUNCTIONAL -> FunctionalDemo.run(control);
+            case PRODUCER_CONSUMER -> ProducerConsumerDemo.run(control);
+            case PIPELINE -> PipelineDemo.run(control);
+            case REACTIVE -> ReactiveDemo.run(control);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.malskyi.studying.multithreading;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the demo named by {@code multithreading.demo} inside the application, so its metrics can be watched live
+ * through Actuator, e.g. {@code --multithreading.demo=assembly}.
+ */
+@Component
+@ConditionalOnProperty("multithreading.demo")
+class DemoRunner implements ApplicationRunner {
+    private final Demo demo;
+
+    DemoRunner(@Value("${multithreading.demo}") String demo) {
+        this.demo = Demo.of(demo);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread.ofPlatform().name("DemoRunner").start(() -> {
+            try {
+                demo.run(RunControl.standalone());
+            } catch (InterruptedException e) {
+                System.out.printf("[%s] Demo %s interrupted%n", getClass().getSimpleName(), demo.id());
+            }
+        });
+    }
+}
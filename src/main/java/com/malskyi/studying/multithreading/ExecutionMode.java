@@ -0,0 +1,29 @@
+package com.malskyi.studying.multithreading;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Kind of threads the demos run their workers on.
+ * Workers spend nearly all their time blocked, so with {@link #VIRTUAL} a worker only occupies a carrier thread
+ * while it actually runs, and thousands of workers can share a handful of carriers.
+ */
+public enum ExecutionMode {
+    PLATFORM, VIRTUAL;
+
+    /**
+     * Returns a factory creating unstarted threads named {@code <prefix>-1}, {@code <prefix>-2}, ...
+     */
+    public ThreadFactory threadFactory(String prefix) {
+        return switch (this) {
+            case PLATFORM -> Thread.ofPlatform().name(prefix + "-", 1).factory();
+            case VIRTUAL -> Thread.ofVirtual().name(prefix + "-", 1).factory();
+        };
+    }
+
+    /**
+     * Starts a {@link PinningMonitor} in {@link #VIRTUAL} mode, returns {@code null} otherwise.
+     */
+    public PinningMonitor startPinningMonitor() {
+        return this == VIRTUAL ? PinningMonitor.start() : null;
+    }
+}
@@ -0,0 +1,40 @@
+package com.malskyi.studying.multithreading;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second half of a demo's shutdown, after intake was stopped: waits for the threads to finish their in-flight work
+ * and interrupts whatever is still running once the deadline passed.
+ */
+public final class GracefulShutdown {
+
+    private GracefulShutdown() {
+    }
+
+    /**
+     * Returns true if all threads finished within {@code drainTimeoutMillis}. Otherwise interrupts the rest and waits
+     * up to {@code abortTimeoutMillis} for them to exit.
+     */
+    public static boolean awaitOrInterrupt(Collection<Thread> threads, long drainTimeoutMillis, long abortTimeoutMillis) throws InterruptedException {
+        if (await(threads, drainTimeoutMillis)) {
+            System.out.println("All workers finished in-flight work!");
+            return true;
+        }
+        System.out.println("Drain deadline exceeded, interrupting remaining workers...");
+        threads.forEach(Thread::interrupt);
+        await(threads, abortTimeoutMillis);
+        return false;
+    }
+
+    private static boolean await(Collection<Thread> threads, long timeoutMillis) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Thread thread : threads) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+            }
+        }
+        return threads.stream().noneMatch(Thread::isAlive);
+    }
+}
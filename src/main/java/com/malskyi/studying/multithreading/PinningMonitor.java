@@ -0,0 +1,75 @@
+package com.malskyi.studying.multithreading;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the moments a virtual thread held on to its carrier thread, using JFR events.
+ * {@code jdk.VirtualThreadPinned} only covers parking inside {@code synchronized}; blocking on monitor entry and
+ * {@link Object#wait()}, as {@code SharedBuffer} does, pin the carrier as well and are reported through the
+ * monitor events of virtual threads.
+ */
+public final class PinningMonitor implements AutoCloseable {
+    private static final String[] EVENTS = {"jdk.VirtualThreadPinned", "jdk.JavaMonitorEnter", "jdk.JavaMonitorWait"};
+
+    private final RecordingStream stream = new RecordingStream();
+    private final Map<String, LongAdder> pinnedCounts = new ConcurrentHashMap<>();
+    private final LongAdder pinnedNanos = new LongAdder();
+
+    private PinningMonitor() {
+        for (String event : EVENTS) {
+            stream.enable(event).withThreshold(Duration.ZERO).withStackTrace();
+        }
+        stream.onEvent(this::record);
+    }
+
+    public static PinningMonitor start() {
+        final PinningMonitor monitor = new PinningMonitor();
+        monitor.stream.startAsync();
+        return monitor;
+    }
+
+    private void record(RecordedEvent event) {
+        if (event.getThread("eventThread") == null || !event.getThread("eventThread").isVirtual()) {
+            return;
+        }
+        pinnedNanos.add(event.getDuration().toNanos());
+        pinnedCounts.computeIfAbsent(String.format("%s at %s", event.getEventType().getName(), callSite(event)),
+                key -> new LongAdder()).increment();
+    }
+
+    /**
+     * First frame outside the JDK, so the report points at our code rather than at {@code Object.wait0}.
+     */
+    private static String callSite(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            final String type = frame.getMethod().getType().getName();
+            if (!type.startsWith("java.") && !type.startsWith("jdk.")) {
+                return String.format("%s.%s:%s", type, frame.getMethod().getName(), frame.getLineNumber());
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * Stops recording after all pending events were processed and prints the report.
+     */
+    @Override
+    public void close() {
+        stream.stop();
+        stream.close();
+        final long total = pinnedCounts.values().stream().mapToLong(LongAdder::sum).sum();
+        System.out.printf("[%s] Carrier threads pinned %s times, %s ms in total%n", getClass().getSimpleName(),
+                total, Duration.ofNanos(pinnedNanos.sum()).toMillis());
+        pinnedCounts.forEach((site, count) -> System.out.printf("\t%s x %s%n", count.sum(), site));
+    }
+}
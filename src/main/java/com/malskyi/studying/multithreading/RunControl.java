@@ -0,0 +1,196 @@
+package com.malskyi.studying.multithreading;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Handle between a running demo and whoever started it: lets the caller stop the run early, override the demo's
+ * settings and watch its progress, without the demo knowing about HTTP or Spring.
+ * <p>
+ * A demo declares its settings by name with the constant it used to hard-code as the default. A {@link #fixed} setting
+ * is read once at startup, so it can only be overridden when the run is started; a {@link #live} one is read by the
+ * workers as they go and can be {@link #set} while the run is going on. {@link #standalone()} is what {@code main}
+ * uses: no overrides and no early stop, i.e. the demo behaves as it always did.
+ * <p>
+ * A demo has declared all its settings once it starts waiting for its running time to end, so that is when overrides
+ * of settings the demo does not have are found; they stop the run, see {@link #awaitSettingsDeclared()}.
+ */
+public final class RunControl {
+    private final Map<String, Long> overrides;
+    private final Map<String, Setting> settings = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> totals = new ConcurrentSkipListMap<>();
+    private final CountDownLatch stopRequested = new CountDownLatch(1);
+    private final CountDownLatch settingsDeclared = new CountDownLatch(1);
+    private volatile IllegalArgumentException invalidOverrides;
+
+    /**
+     * @throws IllegalArgumentException if an override is below 1; capacities, delays and worker counts all need one
+     */
+    public RunControl(Map<String, Long> overrides) {
+        overrides.forEach(RunControl::requireAtLeastOne);
+        this.overrides = Map.copyOf(overrides);
+    }
+
+    public static RunControl standalone() {
+        return new RunControl(Map.of());
+    }
+
+    /**
+     * Declares a setting that is read once, at startup.
+     */
+    public long fixed(String name, long defaultValue) {
+        return register(name, defaultValue, false, null).get();
+    }
+
+    public Setting live(String name, long defaultValue) {
+        return register(name, defaultValue, true, null);
+    }
+
+    /**
+     * Declares a live setting whose new values are also pushed to {@code onChange}, for settings the demo does not poll.
+     */
+    public Setting live(String name, long defaultValue, LongConsumer onChange) {
+        return register(name, defaultValue, true, onChange);
+    }
+
+    /**
+     * Changes a live setting of the running demo.
+     *
+     * @throws IllegalArgumentException if the demo has no such setting or the value is below 1, as for overrides
+     * @throws IllegalStateException    if the setting is only read at startup
+     */
+    public void set(String name, long value) {
+        final Setting setting = settings.get(name);
+        if (setting == null) {
+            throw new IllegalArgumentException("Unknown setting: " + name);
+        }
+        if (!setting.live) {
+            throw new IllegalStateException("Setting " + name + " can only be given when the run is started");
+        }
+        requireAtLeastOne(name, value);
+        setting.value = value;
+        if (setting.onChange != null) {
+            setting.onChange.accept(value);
+        }
+    }
+
+    public Map<String, Long> settings() {
+        final Map<String, Long> values = new LinkedHashMap<>();
+        settings.forEach((name, setting) -> values.put(name, setting.value));
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Publishes an ever-growing count of the run, e.g. deployed containers, for throughput reporting.
+     */
+    public void track(String name, LongSupplier total) {
+        totals.put(name, total);
+    }
+
+    /**
+     * Publishes the count of every status a container can reach.
+     */
+    public void track(StatusCounters counters) {
+        for (ContainerStatus status : ContainerStatus.values()) {
+            if (status != ContainerStatus.EMPTY) {
+                track(status.name().toLowerCase(), () -> counters.count(status));
+            }
+        }
+    }
+
+    public Map<String, Long> totals() {
+        final Map<String, Long> values = new LinkedHashMap<>();
+        totals.forEach((name, total) -> values.put(name, total.getAsLong()));
+        return Collections.unmodifiableMap(values);
+    }
+
+    public void requestStop() {
+        stopRequested.countDown();
+    }
+
+    public boolean isStopRequested() {
+        settingsDeclared();
+        return stopRequested.getCount() == 0;
+    }
+
+    /**
+     * Waits for up to {@code millis} in place of a demo's fixed running time.
+     *
+     * @return true if a stop was requested, false if the time ran out
+     */
+    public boolean awaitStop(long millis) throws InterruptedException {
+        settingsDeclared();
+        return stopRequested.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Marks the end of the demo's setup: overrides of settings it did not declare are rejected and stop the run.
+     * Also called when the run ends, in case the demo never got that far.
+     */
+    public void settingsDeclared() {
+        if (settingsDeclared.getCount() == 0) {
+            return;
+        }
+        synchronized (settingsDeclared) {
+            if (settingsDeclared.getCount() == 0) {
+                return;
+            }
+            final List<String> unknown = overrides.keySet().stream().filter(name -> !settings.containsKey(name)).sorted().toList();
+            if (!unknown.isEmpty()) {
+                invalidOverrides = new IllegalArgumentException("Unknown settings: " + unknown);
+                requestStop();
+            }
+            settingsDeclared.countDown();
+        }
+    }
+
+    /**
+     * Waits until the demo has declared its settings, or ended.
+     *
+     * @throws IllegalArgumentException if an override named a setting the demo does not have
+     */
+    public void awaitSettingsDeclared() throws InterruptedException {
+        settingsDeclared.await();
+        if (invalidOverrides != null) {
+            throw invalidOverrides;
+        }
+    }
+
+    private static void requireAtLeastOne(String name, Long value) {
+        if (value == null || value < 1) {
+            throw new IllegalArgumentException("Setting " + name + " must be at least 1: " + value);
+        }
+    }
+
+    private Setting register(String name, long defaultValue, boolean live, LongConsumer onChange) {
+        final Setting setting = new Setting(overrides.getOrDefault(name, defaultValue), live, onChange);
+        settings.put(name, setting);
+        return setting;
+    }
+
+    /**
+     * Current value of a setting; workers read it every time they use it, so a change takes effect on the next container.
+     */
+    public static final class Setting {
+        private final boolean live;
+        private final LongConsumer onChange;
+        private volatile long value;
+
+        private Setting(long value, boolean live, LongConsumer onChange) {
+            this.value = value;
+            this.live = live;
+            this.onChange = onChange;
+        }
+
+        public long get() {
+            return value;
+        }
+    }
+}
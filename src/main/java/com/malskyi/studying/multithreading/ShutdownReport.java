@@ -0,0 +1,67 @@
+package com.malskyi.studying.multithreading;
+
+import com.malskyi.studying.multithreading.resilience.DeadLetter;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tells how far every container got once a demo has stopped.
+ * Statuses are only set when a stage completes, so anything not {@link ContainerStatus#DEPLOYED} was left unfinished
+ * in the stage after its status.
+ */
+public final class ShutdownReport {
+
+    private ShutdownReport() {
+    }
+
+    public static void print(Collection<Container> containers) {
+        final Map<ContainerStatus, List<Container>> byStatus = containers.stream()
+                .collect(Collectors.groupingBy(Container::getContainerStatus, () -> new EnumMap<>(ContainerStatus.class), Collectors.toList()));
+        System.out.println("Shutdown report:");
+        for (ContainerStatus status : ContainerStatus.values()) {
+            System.out.println("\t" + status + ": " + byStatus.getOrDefault(status, List.of()).size() + " containers");
+        }
+        final List<String> unfinished = containers.stream()
+                .filter(container -> container.getContainerStatus() != ContainerStatus.DEPLOYED)
+                .map(Container::getName)
+                .toList();
+        System.out.println(unfinished.isEmpty()
+                ? "\tNothing left unfinished"
+                : "\tUnfinished: " + String.join(", ", unfinished));
+    }
+
+    /**
+     * Lists the containers a stage gave up on, with the stage, the attempts it made and the last failure.
+     */
+    public static void printDeadLetters(Collection<DeadLetter> deadLetters) {
+        if (deadLetters.isEmpty()) {
+            System.out.println("\tNo dead letters");
+            return;
+        }
+        System.out.println("\tDead letters:");
+        for (DeadLetter deadLetter : deadLetters) {
+            System.out.printf("\t\t%s in %s after %s attempts: %s%n", deadLetter.container().getName(), deadLetter.stage(),
+                    deadLetter.attempts(), deadLetter.cause());
+        }
+    }
+
+    public static void print(ContainerRegistry registry) {
+        System.out.println("Shutdown report:");
+        for (ContainerStatus status : ContainerStatus.values()) {
+            System.out.println("\t" + status + ": " + registry.count(status) + " containers");
+        }
+        final List<String> unfinished = IntStream.rangeClosed(1, registry.size())
+                .mapToObj(registry::view)
+                .filter(container -> container.getContainerStatus() != ContainerStatus.DEPLOYED)
+                .map(ContainerView::getName)
+                .toList();
+        System.out.println(unfinished.isEmpty()
+                ? "\tNothing left unfinished"
+                : "\tUnfinished: " + String.join(", ", unfinished));
+    }
+}
@@ -0,0 +1,126 @@
+package com.malskyi.studying.multithreading;
+
+import com.malskyi.studying.multithreading.persistence.LifecycleEvents;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many containers reached every {@link ContainerStatus}, replacing a tracking queue per status that was only
+ * ever asked for its size. Every status has its own striped {@link LongAdder}, so recording is a contention-free
+ * increment and reading a count is O(1). Recorded transitions also go to the {@link LifecycleEvents} audit trail.
+ * <p>
+ * Optionally keeps a bounded sample of the recorded containers: on average one in {@code sampleEvery}, overwriting the
+ * oldest once {@code sampleSize} are kept.
+ */
+public final class StatusCounters {
+    private static final ContainerStatus[] STATUSES = ContainerStatus.values();
+
+    private final LongAdder[] counts = new LongAdder[STATUSES.length];
+    private final long startedAt = System.nanoTime();
+    private final long[] lastProgressCounts = new long[STATUSES.length];
+    private long lastProgressAt = startedAt;
+
+    private final int sampleEvery;
+    private final AtomicReferenceArray<Container> samples;
+    private final AtomicInteger sampled = new AtomicInteger();
+
+    public StatusCounters() {
+        this(0, 0);
+    }
+
+    /**
+     * @param sampleEvery keep one in this many recorded containers, 0 to keep none
+     * @param sampleSize  how many sampled containers are kept
+     */
+    public StatusCounters(int sampleEvery, int sampleSize) {
+        if (sampleEvery < 0 || sampleSize < 0 || (sampleEvery > 0) != (sampleSize > 0)) {
+            throw new IllegalArgumentException(String.format("Invalid sampling: every %s, size %s", sampleEvery, sampleSize));
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+        this.sampleEvery = sampleEvery;
+        this.samples = new AtomicReferenceArray<>(sampleSize);
+    }
+
+    /**
+     * Counts the container as having reached the status. Takes the status explicitly, since the next stage may already
+     * be changing the container's own one.
+     */
+    public void record(ContainerStatus status, Container container) {
+        counts[status.ordinal()].increment();
+        LifecycleEvents.record(status, container);
+        if (sampleEvery > 0 && ThreadLocalRandom.current().nextInt(sampleEvery) == 0) {
+            samples.set(Math.floorMod(sampled.getAndIncrement(), samples.length()), container);
+        }
+    }
+
+    /**
+     * Counts a container kept in a {@link ContainerRegistry} as having reached the status, without allocating for it.
+     * Such containers are not sampled.
+     */
+    public void record(ContainerStatus status, ContainerRegistry registry, int id) {
+        counts[status.ordinal()].increment();
+        LifecycleEvents.record(status, registry, id);
+    }
+
+    public void recordAll(ContainerStatus status, Iterable<Container> containers) {
+        for (Container container : containers) {
+            record(status, container);
+        }
+    }
+
+    public long count(ContainerStatus status) {
+        return counts[status.ordinal()].sum();
+    }
+
+    /**
+     * @return containers per second that reached the status since the counters were created
+     */
+    public double rate(ContainerStatus status) {
+        return count(status) * (double) TimeUnit.SECONDS.toNanos(1) / Math.max(1, System.nanoTime() - startedAt);
+    }
+
+    public List<Container> samples() {
+        final List<Container> result = new ArrayList<>(samples.length());
+        for (int i = 0; i < samples.length(); i++) {
+            final Container container = samples.get(i);
+            if (container != null) {
+                result.add(container);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return counts and rates since the previous call, one line for live progress
+     */
+    public synchronized String progress() {
+        final long now = System.nanoTime();
+        final double seconds = Math.max(1, now - lastProgressAt) / (double) TimeUnit.SECONDS.toNanos(1);
+        final StringBuilder line = new StringBuilder("Progress:");
+        for (ContainerStatus status : STATUSES) {
+            if (status == ContainerStatus.EMPTY) {
+                continue;
+            }
+            final long count = count(status);
+            line.append(String.format(" %s %s (%.1f/s)", status, count, (count - lastProgressCounts[status.ordinal()]) / seconds));
+            lastProgressCounts[status.ordinal()] = count;
+        }
+        lastProgressAt = now;
+        return line.toString();
+    }
+
+    public void print() {
+        System.out.println("Results:");
+        System.out.printf("\tInitialized: %s containers, %.1f/s%n", count(ContainerStatus.INITIALIZED), rate(ContainerStatus.INITIALIZED));
+        System.out.printf("\tBuilt: %s containers, %.1f/s%n", count(ContainerStatus.BUILT), rate(ContainerStatus.BUILT));
+        System.out.printf("\tDeployed: %s containers, %.1f/s%n", count(ContainerStatus.DEPLOYED), rate(ContainerStatus.DEPLOYED));
+    }
+}
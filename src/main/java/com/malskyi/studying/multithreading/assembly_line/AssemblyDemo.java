@@ -2,198 +2,503 @@ package com.malskyi.studying.multithreading.assembly_line;
 
 import com.malskyi.studying.multithreading.Container;
 import com.malskyi.studying.multithreading.ContainerStatus;
+import com.malskyi.studying.multithreading.ExecutionMode;
+import com.malskyi.studying.multithreading.PinningMonitor;
+import com.malskyi.studying.multithreading.RunControl;
+import com.malskyi.studying.multithreading.ShutdownReport;
+import com.malskyi.studying.multithreading.StatusCounters;
+import com.malskyi.studying.multithreading.durable.FsyncPolicy;
+import com.malskyi.studying.multithreading.durable.SegmentJournal;
+import com.malskyi.studying.multithreading.logging.Log;
+import com.malskyi.studying.multithreading.resilience.DeadLetter;
+import com.malskyi.studying.multithreading.resilience.FaultInjector;
+import com.malskyi.studying.multithreading.resilience.ResilientStage;
+import com.malskyi.studying.multithreading.resilience.StagePolicy;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Stream;
 
 /**
- * Results:
+ * Results (1 worker per stage, autoscaling disabled):
  *  Initialized: 59 containers
  *  Built: 19 containers
  *  Deployed: 10 containers
+ * With urgent and expiring containers (1 worker per stage, every 10th container urgent, 3 s urgent and 4 s bulk deadline):
+ *  FIFO: 9 deployed, 39 expired in the queues, urgent containers waited up to 4006 ms in front of a stage
+ *  PRIORITY: 11 deployed, 39 expired in the queues, urgent containers waited up to 599 ms in front of a stage
  */
 public class AssemblyDemo {
+    /**
+     * FIFO hands containers over in arrival order. PRIORITY serves urgent containers first and, within a priority,
+     * the earliest deadline first, see {@link PriorityStageQueue}.
+     */
+    enum Scheduling {
+        FIFO, PRIORITY;
+
+        BlockingQueue<Container> newQueue(int capacity) {
+            return this == PRIORITY ? new PriorityStageQueue(capacity) : new ArrayBlockingQueue<>(capacity);
+        }
+    }
+
+    private static final ExecutionMode EXECUTION_MODE = ExecutionMode.PLATFORM;
+    private static final Scheduling SCHEDULING = Scheduling.FIFO;
+
     private static final int INIT_THREADS_COUNT = 1;
     private static final int BUILD_THREADS_COUNT = 1;
     private static final int DEPLOY_THREADS_COUNT = 1;
 
+    private static final int INIT_MAX_THREADS_COUNT = 2;
+    private static final int BUILD_MAX_THREADS_COUNT = 4;
+    private static final int DEPLOY_MAX_THREADS_COUNT = 8;
+
+    private static final long INIT_DELAY = 100L;
+    private static final long BUILD_DELAY = 300L;
+    private static final long DEPLOY_DELAY = 600L;
+
+    private static final int QUEUE_CAPACITY = 100;
+
+    // Every URGENT_EVERY-th container is urgent. A container past its deadline is dropped before the next stage works on it,
+    // 0 means no deadline. e.g. 3000L and 4000L, with Scheduling.PRIORITY above, run the urgent scenario of the results.
+    private static final int URGENT_EVERY = 10;
+    private static final int URGENT_PRIORITY = 1;
+    private static final long URGENT_DEADLINE = 0L;
+    private static final long BULK_DEADLINE = 0L;
+
+    // e.g. Path.of("target", "assembly-line") journals the hand-off queues there, and a restart replays the containers
+    // that were queued or in progress. null keeps the queues in memory only.
+    private static final Path DURABILITY_DIR = null;
+    private static final int SEGMENT_SIZE = 4 << 20;
+    private static final FsyncPolicy FSYNC_POLICY = new FsyncPolicy(64, 10L);
+
+    // Batching pays off for stage delays close to the hand-off cost, e.g. new Batching(32, 1L) at sub-millisecond
+    // delays. With the delays above a batch only holds its containers back from idle workers.
+    private static final Batching INIT_BATCHING = Batching.NONE;
+    private static final Batching BUILD_BATCHING = Batching.NONE;
+    private static final Batching DEPLOY_BATCHING = Batching.NONE;
+
+    // Timeout at twice the stage delay, following the live one, 3 attempts with 50-400 ms backoff, breaker opening at half of the last 20 failed
+    private static final StagePolicy BUILD_POLICY = new StagePolicy(2 * BUILD_DELAY, 3, 50L, 400L, 20, 0.5, 1000L);
+    private static final StagePolicy DEPLOY_POLICY = new StagePolicy(2 * DEPLOY_DELAY, 3, 50L, 400L, 20, 0.5, 1000L);
+    // e.g. new FaultInjector(0.1, 0.1, 2 * DEPLOY_DELAY) fails 10% of the attempts and times out another 10%
+    private static final FaultInjector BUILD_FAULTS = FaultInjector.NONE;
+    private static final FaultInjector DEPLOY_FAULTS = FaultInjector.NONE;
+
+    private static final boolean AUTOSCALING_ENABLED = true;
+    private static final long AUTOSCALING_INTERVAL = 500L;
+    private static final int QUEUE_HIGH_WATERMARK = 10;
+    private static final long IDLE_POLL_TIMEOUT = 100L;
+
+    private static final long EXECUTION_TIME_SECONDS = 6L;
+    private static final long DRAIN_TIMEOUT = 3000L;
+    private static final long ABORT_TIMEOUT = 500L;
+
     private static final AtomicInteger COUNTER = new AtomicInteger(1);
 
     public static void main(String[] args) throws InterruptedException {
-        final BlockingQueue<Container> initializedToBuildContainers = new ArrayBlockingQueue<>(100);
-        final BlockingQueue<Container> builtToDeployContainers = new ArrayBlockingQueue<>(100);
-
-        final Queue<Container> initializedContainers = new ConcurrentLinkedQueue<>();
-        final Queue<Container> builtContainers = new ConcurrentLinkedQueue<>();
-        final Queue<Container> deployedContainers = new ConcurrentLinkedQueue<>();
-
-        final List<Thread> initWorkers = Stream.generate(() ->
-                        new Thread(new InitWorker(100L, initializedToBuildContainers, initializedContainers)))
-                .limit(INIT_THREADS_COUNT)
-                .toList();
-        final List<Thread> buildWorkers = Stream.generate(() ->
-                        new Thread(new BuildWorker(300L, initializedToBuildContainers, builtToDeployContainers, builtContainers)))
-                .limit(BUILD_THREADS_COUNT)
-                .toList();
-        final List<Thread> deployWorkers = Stream.generate(() ->
-                        new Thread(new DeployWorker(600L, builtToDeployContainers, deployedContainers)))
-                .limit(DEPLOY_THREADS_COUNT)
-                .toList();
+        run();
+        System.exit(0);
+    }
+
+    public static void run() throws InterruptedException {
+        run(RunControl.standalone());
+    }
+
+    public static void run(RunControl control) throws InterruptedException {
+        final long executionSeconds = control.fixed("execution.seconds", EXECUTION_TIME_SECONDS);
+        final int queueCapacity = (int) control.fixed("queue.capacity", QUEUE_CAPACITY);
+        final RunControl.Setting initDelay = control.live("init.delay", INIT_DELAY);
+        final RunControl.Setting buildDelay = control.live("build.delay", BUILD_DELAY);
+        final RunControl.Setting deployDelay = control.live("deploy.delay", DEPLOY_DELAY);
+
+        final BlockingQueue<Container> initializedToBuildContainers = newStageQueue("build", queueCapacity);
+        final BlockingQueue<Container> builtToDeployContainers = newStageQueue("deploy", queueCapacity);
+        final List<BlockingQueue<Container>> queues = List.of(initializedToBuildContainers, builtToDeployContainers);
+
+        final Queue<Container> createdContainers = new ConcurrentLinkedQueue<>();
+        for (BlockingQueue<Container> queue : queues) {
+            if (queue instanceof DurableStageQueue durable && !durable.recovered().isEmpty()) {
+                System.out.printf("Replayed %s containers from %s%n", durable.recovered().size(), durable.summary());
+                createdContainers.addAll(durable.recovered());
+                // the counter starts at 1 again, new containers must not reuse the names of replayed ones
+                for (Container container : durable.recovered()) {
+                    COUNTER.accumulateAndGet(containerId(container) + 1, Math::max);
+                }
+            }
+        }
+        final StatusCounters counters = new StatusCounters();
+        control.track(counters);
+        final Queue<DeadLetter> deadLetters = new ConcurrentLinkedQueue<>();
+        control.track("dead-lettered", deadLetters::size);
+        final ResilientStage buildStage = new ResilientStage("BuildWorker", BUILD_POLICY, BUILD_FAULTS, deadLetters, () -> 2 * buildDelay.get());
+        final ResilientStage deployStage = new ResilientStage("DeployWorker", DEPLOY_POLICY, DEPLOY_FAULTS, deadLetters, () -> 2 * deployDelay.get());
+
+        final PinningMonitor pinningMonitor = EXECUTION_MODE.startPinningMonitor();
+        final StagePool initWorkers = new StagePool("InitWorker", INIT_THREADS_COUNT, (int) control.fixed("init.max-workers", INIT_MAX_THREADS_COUNT),
+                null, initializedToBuildContainers,
+                pool -> new InitWorker(initDelay, INIT_BATCHING, pool, initializedToBuildContainers, createdContainers, counters), EXECUTION_MODE);
+        final StagePool buildWorkers = new StagePool("BuildWorker", BUILD_THREADS_COUNT, (int) control.fixed("build.max-workers", BUILD_MAX_THREADS_COUNT),
+                initializedToBuildContainers, builtToDeployContainers,
+                pool -> new BuildWorker(buildDelay, BUILD_BATCHING, pool, buildStage, initializedToBuildContainers, builtToDeployContainers, counters), EXECUTION_MODE);
+        final StagePool deployWorkers = new StagePool("DeployWorker", DEPLOY_THREADS_COUNT, (int) control.fixed("deploy.max-workers", DEPLOY_MAX_THREADS_COUNT),
+                builtToDeployContainers, null,
+                pool -> new DeployWorker(deployDelay, DEPLOY_BATCHING, pool, deployStage, builtToDeployContainers, counters), EXECUTION_MODE);
+        final Thread autoscaler = new Thread(new StageAutoscaler(List.of(initWorkers, buildWorkers, deployWorkers),
+                AUTOSCALING_INTERVAL, QUEUE_HIGH_WATERMARK), "StageAutoscaler");
 
         System.out.println("Starting initialization workers...");
-        initWorkers.forEach(Thread::start);
+        initWorkers.start((int) control.live("init.workers", INIT_THREADS_COUNT, workers -> initWorkers.resize((int) workers)).get());
         System.out.println("Starting build workers...");
-        buildWorkers.forEach(Thread::start);
+        buildWorkers.start((int) control.live("build.workers", BUILD_THREADS_COUNT, workers -> buildWorkers.resize((int) workers)).get());
         System.out.println("Starting deploy workers...");
-        deployWorkers.forEach(Thread::start);
+        deployWorkers.start((int) control.live("deploy.workers", DEPLOY_THREADS_COUNT, workers -> deployWorkers.resize((int) workers)).get());
+        if (AUTOSCALING_ENABLED) {
+            System.out.println("Starting autoscaler...");
+            autoscaler.start();
+        }
 
         System.out.println("Running workers...");
         try {
-            Thread.sleep(6000L);
+            control.awaitStop(TimeUnit.SECONDS.toMillis(executionSeconds));
         } catch (InterruptedException ex) {
             throw new RuntimeException(ex);
         }
 
-        System.out.println("Interrupting initialization workers...");
-        initWorkers.forEach(Thread::interrupt);
-        System.out.println("Interrupting build workers...");
-        buildWorkers.forEach(Thread::interrupt);
-        System.out.println("Interrupting deploy workers...");
-        deployWorkers.forEach(Thread::interrupt);
-        System.out.println("All workers interrupted!");
+        autoscaler.interrupt();
+        autoscaler.join();
+        System.out.println("Stopping intake, draining in-flight containers...");
+        final List<StagePool> stages = List.of(initWorkers, buildWorkers, deployWorkers);
+        stages.forEach(StagePool::drain);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT);
+        boolean drained = true;
+        for (StagePool stage : stages) {
+            drained &= stage.awaitTermination(deadline);
+        }
+        if (drained) {
+            System.out.println("All stages drained!");
+        } else {
+            System.out.println("Drain deadline exceeded, interrupting remaining workers...");
+            stages.forEach(StagePool::interruptAll);
+            final long abortDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ABORT_TIMEOUT);
+            for (StagePool stage : stages) {
+                stage.awaitTermination(abortDeadline);
+            }
+        }
+
+        Log.flush();
+        counters.print();
+        System.out.println("\t" + buildStage.summary());
+        System.out.println("\t" + deployStage.summary());
+        System.out.println("\t" + buildWorkers.schedulingSummary());
+        System.out.println("\t" + deployWorkers.schedulingSummary());
+        for (BlockingQueue<Container> queue : queues) {
+            if (queue instanceof DurableStageQueue durable) {
+                durable.close();
+                System.out.println("\t" + durable.summary());
+            }
+        }
+        ShutdownReport.print(createdContainers);
+        ShutdownReport.printDeadLetters(deadLetters);
+        if (pinningMonitor != null) {
+            pinningMonitor.close();
+        }
+    }
 
-        Thread.sleep(300L);
-        System.out.println("Results:");
-        System.out.println("\tInitialized: " + initializedContainers.size() + " containers");
-        System.out.println("\tBuilt: " + builtContainers.size() + " containers");
-        System.out.println("\tDeployed: " + deployedContainers.size() + " containers");
+    private static BlockingQueue<Container> newStageQueue(String name, int capacity) {
+        if (DURABILITY_DIR == null) {
+            return SCHEDULING.newQueue(capacity);
+        }
+        try {
+            return new DurableStageQueue(new SegmentJournal(DURABILITY_DIR.resolve(name), SEGMENT_SIZE, FSYNC_POLICY),
+                    capacity, SCHEDULING::newQueue);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        System.exit(0);
+    /**
+     * Tells a durable queue that the consuming stage is done with the containers. A queue in memory needs nothing.
+     */
+    private static void acknowledge(BlockingQueue<Container> queue, Collection<Container> containers) {
+        if (queue instanceof DurableStageQueue durable) {
+            durable.acknowledge(containers);
+        }
+    }
+
+    /**
+     * The number in a name given by {@link Container#Container(int)}, 0 for any other name.
+     */
+    static int containerId(Container container) {
+        final String name = container.getName();
+        final int dash = name == null ? -1 : name.lastIndexOf('-');
+        try {
+            return dash < 0 ? 0 : Integer.parseInt(name.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Container newContainer() {
+        final int id = COUNTER.getAndIncrement();
+        final Container container = new Container(id);
+        final boolean urgent = id % URGENT_EVERY == 0;
+        final long deadline = urgent ? URGENT_DEADLINE : BULK_DEADLINE;
+        if (urgent) {
+            container.setPriority(URGENT_PRIORITY);
+        }
+        if (deadline > 0) {
+            container.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline));
+        }
+        return container;
     }
 
     private static final class InitWorker implements Runnable {
-        private final long delay;
+        private final RunControl.Setting delay;
+        private final Batching batching;
+        private final StagePool pool;
         private final BlockingQueue<Container> initializedToBuildContainers;
-        private final Queue<Container> initializedContainers;
+        private final Queue<Container> createdContainers;
+        private final StatusCounters counters;
+        private final List<Container> batch;
 
-        public InitWorker(long delay, BlockingQueue<Container> initializedToBuildContainers, Queue<Container> initializedContainers) {
+        public InitWorker(RunControl.Setting delay, Batching batching, StagePool pool, BlockingQueue<Container> initializedToBuildContainers, Queue<Container> createdContainers, StatusCounters counters) {
             this.delay = delay;
+            this.batching = batching;
+            this.pool = pool;
             this.initializedToBuildContainers = initializedToBuildContainers;
-            this.initializedContainers = initializedContainers;
+            this.createdContainers = createdContainers;
+            this.counters = counters;
+            this.batch = new ArrayList<>(batching.size());
         }
 
         @Override
         public void run() {
-            while (!Thread.interrupted()) {
-                System.out.printf("[%s] Initializing container...%n", getClass().getSimpleName());
-                final Container container = new Container(COUNTER.getAndIncrement());
+            long batchStartedAt = 0L;
+            while (!Thread.currentThread().isInterrupted()) {
+                if (pool.isDraining() || pool.shouldRetire()) {
+                    publish();
+                    break;
+                }
+                Log.debug("[%s] Initializing container...%n", getClass().getSimpleName());
+                final long startedAt = System.nanoTime();
+                final Container container = newContainer();
+                createdContainers.add(container);
                 try {
-                    Thread.sleep(delay);
+                    Thread.sleep(delay.get());
                 } catch (InterruptedException e) {
-                    System.out.printf("[%s] InterruptedException during container initialization%n", getClass().getSimpleName());
-                    System.out.printf("[%s] Stopping initialization process!%n", getClass().getSimpleName());
+                    Log.info("[%s] InterruptedException during container initialization%n", getClass().getSimpleName());
+                    Log.info("[%s] Stopping initialization process!%n", getClass().getSimpleName());
                     break;
                 }
-                container.setInitializedBy(String.format("[%s] %s ", Thread.currentThread().getName(), getClass().getSimpleName()));
+                container.setInitializedBy("[" + Thread.currentThread().getName() + "] " + getClass().getSimpleName() + " ");
                 container.setContainerStatus(ContainerStatus.INITIALIZED);
-                try {
-                    initializedToBuildContainers.put(container);
-                } catch (InterruptedException e) {
-                    System.out.printf("[%s] InterruptedException during container initialization registration%n", getClass().getSimpleName());
-                    System.out.printf("[%s] Container was not registered!%n", getClass().getSimpleName());
+                pool.recordServiceTime(System.nanoTime() - startedAt);
+                if (batch.isEmpty()) {
+                    batchStartedAt = startedAt;
+                }
+                batch.add(container);
+                if (batching.isComplete(batch, batchStartedAt)) {
+                    publish();
                 }
-                initializedContainers.add(container);
             }
         }
+
+        private void publish() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            final int published = batching.publish(initializedToBuildContainers, batch);
+            if (published < batch.size()) {
+                Log.info("[%s] InterruptedException during container initialization registration%n", getClass().getSimpleName());
+                Log.info("[%s] %s containers were not registered!%n", getClass().getSimpleName(), batch.size() - published);
+            }
+            counters.recordAll(ContainerStatus.INITIALIZED, batch.subList(0, published));
+            batch.clear();
+        }
     }
 
     private static final class BuildWorker extends Thread {
-        private final long delay;
+        private final RunControl.Setting delay;
+        private final Batching batching;
+        private final StagePool pool;
+        private final ResilientStage stage;
         private final BlockingQueue<Container> initializedToBuildContainers;
         private final BlockingQueue<Container> builtToDeployContainers;
-        private final Queue<Container> builtContainers;
+        private final StatusCounters counters;
+        private final List<Container> batch;
 
-        public BuildWorker(long delay, BlockingQueue<Container> initializedToBuildContainers, BlockingQueue<Container> builtToDeployContainers, Queue<Container> builtContainers) {
+        public BuildWorker(RunControl.Setting delay, Batching batching, StagePool pool, ResilientStage stage, BlockingQueue<Container> initializedToBuildContainers, BlockingQueue<Container> builtToDeployContainers, StatusCounters counters) {
             this.delay = delay;
+            this.batching = batching;
+            this.pool = pool;
+            this.stage = stage;
             this.initializedToBuildContainers = initializedToBuildContainers;
             this.builtToDeployContainers = builtToDeployContainers;
-            this.builtContainers = builtContainers;
+            this.counters = counters;
+            this.batch = new ArrayList<>(batching.size());
         }
 
         @Override
         public void run() {
-            while (!interrupted()) {
-                final Container container;
+            while (!interrupted() && !pool.shouldRetire()) {
+                batch.clear();
                 try {
-                    container = initializedToBuildContainers.take();
+                    if (!batching.drain(initializedToBuildContainers, batch, IDLE_POLL_TIMEOUT)) {
+                        continue;
+                    }
                 } catch (InterruptedException e) {
-
-                    throw new RuntimeException(e);
+                    Log.info("[%s] InterruptedException caught while waiting for containers%n", getClass().getSimpleName());
+                    break;
                 }
-                System.out.printf("[%s] Building %s...%n", getClass().getSimpleName(), container.getName());
-                try {
-                    sleep(delay);
-                } catch (InterruptedException e) {
-                    System.out.printf("[%s] InterruptedException caught during build%n", getClass().getSimpleName());
-                    System.out.printf("[%s] Finishing process without completion%n", getClass().getSimpleName());
+                final boolean poisoned = batch.removeIf(container -> container == StagePool.POISON_PILL);
+                if (!buildBatch()) {
                     break;
                 }
-                container.setBuildBy(String.format("[%s] %s ", Thread.currentThread().getName(), getClass().getSimpleName()));
-                container.setContainerStatus(ContainerStatus.BUILT);
+                Log.debug("[%s] Put %s containers to deployment queue%n", getClass().getSimpleName(), batch.size());
+                // only what reached the deployment queue counts as built; the rest stays in the journal, if any
+                final List<Container> published = batch.subList(0, batching.publish(builtToDeployContainers, batch));
+                acknowledge(initializedToBuildContainers, published);
+                counters.recordAll(ContainerStatus.BUILT, published);
+                if (published.size() < batch.size()) {
+                    Log.info("[%s] InterruptedException caught while publishing built containers%n", getClass().getSimpleName());
+                    break;
+                }
+                if (poisoned) {
+                    Log.info("[%s] Build queue drained, stopping%n", getClass().getSimpleName());
+                    try {
+                        pool.returnPoisonPill();
+                    } catch (InterruptedException e) {
+                        Log.info("[%s] InterruptedException caught while returning the poison pill%n", getClass().getSimpleName());
+                    }
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Returns false if interrupted, the batch is then left unpublished.
+         * Containers the stage gave up on are dropped from the batch.
+         */
+        private boolean buildBatch() {
+            for (Iterator<Container> iterator = batch.iterator(); iterator.hasNext(); ) {
+                final Container container = iterator.next();
+                pool.recordQueueWait(container);
+                if (pool.dropIfExpired(container)) {
+                    iterator.remove();
+                    acknowledge(initializedToBuildContainers, List.of(container));
+                    continue;
+                }
+                Log.debug("[%s] Building %s...%n", getClass().getSimpleName(), container.getName());
+                final long startedAt = System.nanoTime();
                 try {
-                    System.out.println("Put " + container.getName() + " to deployment queue");
-                    builtToDeployContainers.put(container);
+                    if (!stage.execute(container, built -> sleep(delay.get()))) {
+                        iterator.remove();
+                        acknowledge(initializedToBuildContainers, List.of(container));
+                        continue;
+                    }
                 } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+                    Log.info("[%s] InterruptedException caught during build%n", getClass().getSimpleName());
+                    Log.info("[%s] Finishing process without completion%n", getClass().getSimpleName());
+                    return false;
                 }
-                builtContainers.add(container);
+                container.setBuildBy("[" + Thread.currentThread().getName() + "] " + getClass().getSimpleName() + " ");
+                container.setContainerStatus(ContainerStatus.BUILT);
+                pool.recordServiceTime(System.nanoTime() - startedAt);
             }
+            return true;
         }
     }
 
     private static final class DeployWorker implements Runnable {
-        private final long delay;
+        private final RunControl.Setting delay;
+        private final Batching batching;
+        private final StagePool pool;
+        private final ResilientStage stage;
         private final BlockingQueue<Container> builtToDeployContainers;
-        private final Queue<Container> deployedContainers;
+        private final StatusCounters counters;
+        private final List<Container> batch;
 
-        public DeployWorker(long delay, BlockingQueue<Container> builtToDeployContainers, Queue<Container> deployedContainers) {
+        public DeployWorker(RunControl.Setting delay, Batching batching, StagePool pool, ResilientStage stage, BlockingQueue<Container> builtToDeployContainers, StatusCounters counters) {
             this.delay = delay;
+            this.batching = batching;
+            this.pool = pool;
+            this.stage = stage;
             this.builtToDeployContainers = builtToDeployContainers;
-            this.deployedContainers = deployedContainers;
+            this.counters = counters;
+            this.batch = new ArrayList<>(batching.size());
         }
 
         @Override
         public void run() {
-            while (!Thread.interrupted()) {
-                final Container container;
+            while (!Thread.interrupted() && !pool.shouldRetire()) {
+                batch.clear();
                 try {
-                    container = builtToDeployContainers.take();
-                    System.out.println("Took " + container.getName() + " from deployment queue");
+                    if (!batching.drain(builtToDeployContainers, batch, IDLE_POLL_TIMEOUT)) {
+                        continue;
+                    }
                 } catch (InterruptedException e) {
-                    System.out.printf("[%s] InterruptedException caught inside deploy worker during take()!%n", getClass().getSimpleName());
-                    System.out.printf("[%s] Finishing process%n", getClass().getSimpleName());
+                    Log.info("[%s] InterruptedException caught inside deploy worker during take()!%n", getClass().getSimpleName());
+                    Log.info("[%s] Finishing process%n", getClass().getSimpleName());
+                    break;
+                }
+                final boolean poisoned = batch.removeIf(container -> container == StagePool.POISON_PILL);
+                Log.debug("[%s] Took %s containers from deployment queue%n", getClass().getSimpleName(), batch.size());
+                if (!deployBatch()) {
+                    break;
+                }
+                if (poisoned) {
+                    Log.info("[%s] Deployment queue drained, stopping%n", getClass().getSimpleName());
+                    try {
+                        pool.returnPoisonPill();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
                     break;
                 }
-                System.out.printf("[%s] Deploying %s...%n", getClass().getSimpleName(), container.getName());
+            }
+        }
+
+        /**
+         * Returns false if interrupted, the rest of the batch is then left undeployed.
+         */
+        private boolean deployBatch() {
+            for (Container container : batch) {
+                pool.recordQueueWait(container);
+                if (pool.dropIfExpired(container)) {
+                    acknowledge(builtToDeployContainers, List.of(container));
+                    continue;
+                }
+                Log.debug("[%s] Deploying %s...%n", getClass().getSimpleName(), container.getName());
+                final long startedAt = System.nanoTime();
                 try {
-                    Thread.sleep(delay);
+                    if (!stage.execute(container, deployed -> Thread.sleep(delay.get()))) {
+                        acknowledge(builtToDeployContainers, List.of(container));
+                        continue;
+                    }
                 } catch (InterruptedException e) {
-                    System.out.printf("[%s] InterruptedException caught inside deploy worker during deployment finish!%n", getClass().getSimpleName());
-                    System.out.printf("[%s] Currently deployed %s containers%n", getClass().getSimpleName(), deployedContainers.size());
-                    System.out.printf("[%s] Finishing deployment process!%n", getClass().getSimpleName());
-                    break;
-                } finally {
-                    container.setDeployedBy(String.format("[%s] %s ", Thread.currentThread().getName(), getClass().getSimpleName()));
-                    container.setContainerStatus(ContainerStatus.DEPLOYED);
-                    deployedContainers.add(container);
-                    System.out.println("Deployed " + container.getName());
+                    Log.info("[%s] InterruptedException caught inside deploy worker, %s stays undeployed!%n", getClass().getSimpleName(), container.getName());
+                    Log.info("[%s] Currently deployed %s containers%n", getClass().getSimpleName(), counters.count(ContainerStatus.DEPLOYED));
+                    Log.info("[%s] Finishing deployment process!%n", getClass().getSimpleName());
+                    return false;
                 }
+                pool.recordServiceTime(System.nanoTime() - startedAt);
+                container.setDeployedBy("[" + Thread.currentThread().getName() + "] " + getClass().getSimpleName() + " ");
+                container.setContainerStatus(ContainerStatus.DEPLOYED);
+                counters.record(ContainerStatus.DEPLOYED, container);
+                acknowledge(builtToDeployContainers, List.of(container));
+                Log.debug("[%s] Deployed %s%n", getClass().getSimpleName(), container.getName());
             }
+            return true;
         }
     }
 }
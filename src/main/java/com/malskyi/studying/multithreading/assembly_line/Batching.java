@@ -0,0 +1,81 @@
+package com.malskyi.studying.multithreading.assembly_line;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched hand-off of one assembly line stage.
+ * A worker waits for the first container, then takes up to {@code size - 1} more with a single
+ * {@link BlockingQueue#drainTo} call, so the queue lock and the wake-up are paid once per batch instead of once per
+ * container. If the batch is still not full, the worker lingers up to {@code lingerMillis} for late arrivals, which
+ * keeps low-rate traffic flowing while fast traffic fills batches right away. Size 1 means no batching.
+ */
+record Batching(int size, long lingerMillis) {
+    static final Batching NONE = new Batching(1, 0L);
+
+    Batching {
+        if (size < 1 || lingerMillis < 0) {
+            throw new IllegalArgumentException(String.format("Invalid batching: size %s, linger %s ms", size, lingerMillis));
+        }
+    }
+
+    /**
+     * Fills {@code batch} from {@code queue}. Returns false if no container arrived within {@code idleTimeoutMillis}.
+     */
+    boolean drain(BlockingQueue<Container> queue, List<Container> batch, long idleTimeoutMillis) throws InterruptedException {
+        final Container first = queue.poll(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        queue.drainTo(batch, size - batch.size());
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        while (batch.size() < size) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            final Container next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, size - batch.size());
+        }
+        return true;
+    }
+
+    /**
+     * Returns true when a batch that has been collecting since {@code startedAt} (a {@link System#nanoTime()}
+     * value) has to be handed to the next stage.
+     */
+    boolean isComplete(Collection<Container> batch, long startedAt) {
+        return batch.size() >= size || System.nanoTime() - startedAt >= TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    }
+
+    /**
+     * Hands the whole batch to the next stage in one go. {@link BlockingQueue} has no bulk insert, so containers
+     * are put back to back; the lock is mostly uncontended because consumers take their items in bulk as well.
+     * Every container is stamped with the time it was queued, for the queue-wait metric.
+     *
+     * @return how many containers were put, from the start of the batch; fewer than all of them only if the thread was
+     * interrupted while waiting for space, its interrupt flag is then set again
+     */
+    int publish(BlockingQueue<Container> queue, List<Container> batch) {
+        int published = 0;
+        try {
+            for (Container container : batch) {
+                container.setQueuedAt(System.nanoTime());
+                queue.put(container);
+                published++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return published;
+    }
+}
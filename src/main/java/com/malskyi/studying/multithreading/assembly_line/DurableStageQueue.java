@@ -0,0 +1,178 @@
+package com.malskyi.studying.multithreading.assembly_line;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.durable.SegmentJournal;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Stage hand-off queue that journals every container before handing it over, so containers queued or in progress when
+ * the process dies are replayed on the next start.
+ * <p>
+ * Taking a container does not remove it from the journal: the consuming stage {@link #acknowledge}s it once it is
+ * done with it, i.e. after it was handed to the next stage, deployed or dropped. A crash between the two replays the
+ * container, so every container is processed at least once. The in-memory order is the one of the wrapped queue; the
+ * {@link StagePool#POISON_PILL} is never journaled.
+ */
+final class DurableStageQueue extends AbstractQueue<Container> implements BlockingQueue<Container>, AutoCloseable {
+    private final SegmentJournal journal;
+    private final BlockingQueue<Container> queue;
+    private final Map<Container, Long> ids = new IdentityHashMap<>();
+    private final List<Container> recovered;
+
+    /**
+     * Puts the containers recovered by the journal into the queue first, growing its capacity if they do not fit.
+     */
+    DurableStageQueue(SegmentJournal journal, int capacity, IntFunction<BlockingQueue<Container>> queueFactory) {
+        this.journal = journal;
+        this.queue = queueFactory.apply(Math.max(capacity, journal.recovered().size()));
+        for (SegmentJournal.Entry entry : journal.recovered()) {
+            ids.put(entry.container(), entry.id());
+            queue.add(entry.container());
+        }
+        this.recovered = journal.recovered().stream().map(SegmentJournal.Entry::container).toList();
+    }
+
+    /**
+     * Containers replayed from the journal when the queue was opened.
+     */
+    List<Container> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Marks the containers as done with, so they are not replayed anymore.
+     */
+    void acknowledge(Collection<Container> containers) {
+        final long[] acknowledged = new long[containers.size()];
+        int count = 0;
+        synchronized (ids) {
+            for (Container container : containers) {
+                final Long id = ids.remove(container);
+                if (id != null) {
+                    acknowledged[count++] = id;
+                }
+            }
+        }
+        if (count > 0) {
+            journal.acknowledge(count == acknowledged.length ? acknowledged : Arrays.copyOf(acknowledged, count));
+        }
+    }
+
+    String summary() {
+        return journal.summary();
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+
+    @Override
+    public void put(Container container) throws InterruptedException {
+        journal(container);
+        try {
+            queue.put(container);
+        } catch (InterruptedException e) {
+            acknowledge(List.of(container));
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean offer(Container container) {
+        journal(container);
+        if (queue.offer(container)) {
+            return true;
+        }
+        acknowledge(List.of(container));
+        return false;
+    }
+
+    @Override
+    public boolean offer(Container container, long timeout, TimeUnit unit) throws InterruptedException {
+        journal(container);
+        boolean offered = false;
+        try {
+            offered = queue.offer(container, timeout, unit);
+            return offered;
+        } finally {
+            if (!offered) {
+                acknowledge(List.of(container));
+            }
+        }
+    }
+
+    @Override
+    public Container take() throws InterruptedException {
+        return queue.take();
+    }
+
+    @Override
+    public Container poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public Container poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    @Override
+    public Container peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public int drainTo(Collection<? super Container> target) {
+        return queue.drainTo(target);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Container> target, int maxElements) {
+        return queue.drainTo(target, maxElements);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!queue.remove(o)) {
+            return false;
+        }
+        acknowledge(List.of((Container) o));
+        return true;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public Iterator<Container> iterator() {
+        return queue.iterator();
+    }
+
+    private void journal(Container container) {
+        if (container == StagePool.POISON_PILL) {
+            return;
+        }
+        final long id = journal.append(container);
+        synchronized (ids) {
+            ids.put(container, id);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.malskyi.studying.multithreading.assembly_line;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded hand-off queue of a stage that serves the most urgent container first: higher {@link Container#getPriority()}
+ * first, then the earliest deadline, then arrival order. Blocks producers at capacity like {@link java.util.concurrent.ArrayBlockingQueue},
+ * which {@link java.util.concurrent.PriorityBlockingQueue} does not, so backpressure between the stages is kept.
+ * <p>
+ * One lock guards the whole heap: a stage hands off a container every few milliseconds at most, and striping the heap
+ * would give up the global order that makes an urgent container overtake a queued flood of bulk ones.
+ */
+final class PriorityStageQueue extends AbstractQueue<Container> implements BlockingQueue<Container> {
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingInt((Entry entry) -> entry.container().getPriority()).reversed()
+            .thenComparingLong(Entry::deadline)
+            .thenComparingLong(Entry::sequence);
+
+    private final int capacity;
+    private final PriorityQueue<Entry> heap;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final long origin = System.nanoTime();
+    private long sequence;
+
+    PriorityStageQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(capacity, ORDER);
+    }
+
+    @Override
+    public boolean offer(Container container) {
+        lock.lock();
+        try {
+            if (heap.size() >= capacity) {
+                return false;
+            }
+            enqueue(container);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Container container, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (heap.size() >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(container);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Container container) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (heap.size() >= capacity) {
+                notFull.await();
+            }
+            enqueue(container);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Container poll() {
+        lock.lock();
+        try {
+            return heap.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Container poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (heap.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Container take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (heap.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Container peek() {
+        lock.lock();
+        try {
+            final Entry head = heap.peek();
+            return head == null ? null : head.container();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Container> target) {
+        return drainTo(target, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Container> target, int maxElements) {
+        if (target == this) {
+            throw new IllegalArgumentException("Cannot drain a queue into itself");
+        }
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && !heap.isEmpty()) {
+                target.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            final boolean removed = heap.removeIf(entry -> entry.container().equals(o));
+            if (removed) {
+                notFull.signal();
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return capacity - heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Iterates over a snapshot in no particular order, like {@link java.util.concurrent.PriorityBlockingQueue}.
+     */
+    @Override
+    public Iterator<Container> iterator() {
+        lock.lock();
+        try {
+            final List<Container> snapshot = new ArrayList<>(heap.size());
+            heap.forEach(entry -> snapshot.add(entry.container()));
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(Container container) {
+        final long deadline = container.getDeadline() == 0 ? Long.MAX_VALUE : container.getDeadline() - origin;
+        heap.add(new Entry(container, deadline, sequence++));
+        notEmpty.signal();
+    }
+
+    private Container dequeue() {
+        final Container container = heap.poll().container();
+        notFull.signal();
+        return container;
+    }
+
+    /**
+     * The deadline is kept relative to the queue's creation, so {@link System#nanoTime()} overflow cannot reorder entries.
+     */
+    private record Entry(Container container, long deadline, long sequence) {
+    }
+}
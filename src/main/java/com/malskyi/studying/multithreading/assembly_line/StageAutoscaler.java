@@ -0,0 +1,76 @@
+package com.malskyi.studying.multithreading.assembly_line;
+
+import com.malskyi.studying.multithreading.logging.Log;
+
+import java.util.List;
+
+/**
+ * Periodically rebalances assembly line stages.
+ * The slowest stage at its maximum size defines the achievable line throughput, every stage is then sized
+ * to just sustain that throughput. Queue depth corrects the estimate: a stage with a backlog above the high
+ * watermark gets one more worker, and a stage feeding a saturated stage gets one less, so no queue grows unbounded.
+ */
+final class StageAutoscaler implements Runnable {
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final List<StagePool> stages;
+    private final long interval;
+    private final int highWatermark;
+
+    StageAutoscaler(List<StagePool> stages, long interval, int highWatermark) {
+        this.stages = stages;
+        this.interval = interval;
+        this.highWatermark = highWatermark;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.interrupted()) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                break;
+            }
+            rebalance();
+        }
+    }
+
+    void rebalance() {
+        final double[] serviceSeconds = new double[stages.size()];
+        double targetRate = Double.MAX_VALUE;
+        for (int i = 0; i < stages.size(); i++) {
+            final StagePool stage = stages.get(i);
+            serviceSeconds[i] = stage.sampleServiceNanos() / NANOS_PER_SECOND;
+            if (serviceSeconds[i] == 0) {
+                return;
+            }
+            targetRate = Math.min(targetRate, stage.getMaxWorkers() / serviceSeconds[i]);
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < stages.size(); i++) {
+            final StagePool stage = stages.get(i);
+            int desired = (int) Math.ceil(targetRate * serviceSeconds[i]);
+            if (stage.inputDepth() > highWatermark) {
+                desired++;
+            }
+            if (i + 1 < stages.size()) {
+                final StagePool downstream = stages.get(i + 1);
+                if (stage.outputDepth() > highWatermark && downstream.getTargetWorkers() >= downstream.getMaxWorkers()) {
+                    desired = Math.min(desired, stage.getTargetWorkers() - 1);
+                }
+            }
+            final int before = stage.getTargetWorkers();
+            stage.resize(desired);
+            changed |= before != stage.getTargetWorkers();
+        }
+
+        if (changed) {
+            final StringBuilder summary = new StringBuilder();
+            for (StagePool stage : stages) {
+                summary.append(String.format(" %s=%s (queue %s)", stage.getName(), stage.getTargetWorkers(), stage.inputDepth()));
+            }
+            Log.info("[%s] Target %.1f containers/s,%s%n", getClass().getSimpleName(), targetRate, summary);
+        }
+    }
+}
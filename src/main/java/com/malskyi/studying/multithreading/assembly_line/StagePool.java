@@ -0,0 +1,278 @@
+package com.malskyi.studying.multithreading.assembly_line;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ExecutionMode;
+import com.malskyi.studying.multithreading.logging.Log;
+import com.malskyi.studying.multithreading.metrics.StageMetrics;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Resizable group of workers serving one assembly line stage.
+ * Workers are added by spawning new threads and removed cooperatively: a worker asks {@link #shouldRetire()}
+ * between containers, so shrinking never drops a container in the middle of a stage.
+ * <p>
+ * Shutdown is a drain: once {@link #drain()} was called, workers exit when they meet the {@link #POISON_PILL} and put
+ * it back for their siblings; the last worker to exit passes it on to the next stage, behind all real containers.
+ */
+final class StagePool {
+    static final Container POISON_PILL = poisonPill();
+
+    private final String name;
+    private final int minWorkers;
+    private final int maxWorkers;
+    private final BlockingQueue<Container> inputQueue;
+    private final BlockingQueue<Container> outputQueue;
+    private final Function<StagePool, Runnable> workerFactory;
+    private final ThreadFactory threadFactory;
+
+    private final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private volatile int targetWorkers;
+    private volatile boolean draining;
+    private volatile boolean aborted;
+    private final AtomicBoolean pillPassedOn = new AtomicBoolean();
+
+    // Containers processed and their service time since the last sample, updated together under serviceWindow, so a
+    // sample never sees the time of a container without its count or the other way round
+    private final Object serviceWindow = new Object();
+    private long windowContainers;
+    private long windowServiceNanos;
+    private final StageMetrics metrics;
+    private double serviceNanosEstimate;
+
+    private final LongAdder expiredContainers = new LongAdder();
+    private final LongAdder urgentContainers = new LongAdder();
+    private final LongAdder urgentWaitNanos = new LongAdder();
+    private final LongAccumulator urgentMaxWaitNanos = new LongAccumulator(Math::max, 0L);
+
+    StagePool(String name, int minWorkers, int maxWorkers,
+              BlockingQueue<Container> inputQueue, BlockingQueue<Container> outputQueue,
+              Function<StagePool, Runnable> workerFactory, ExecutionMode executionMode) {
+        if (minWorkers < 1 || maxWorkers < minWorkers) {
+            throw new IllegalArgumentException(String.format("Invalid worker bounds for %s: [%s, %s]", name, minWorkers, maxWorkers));
+        }
+        this.name = name;
+        this.minWorkers = minWorkers;
+        this.maxWorkers = maxWorkers;
+        this.inputQueue = inputQueue;
+        this.outputQueue = outputQueue;
+        this.workerFactory = workerFactory;
+        this.threadFactory = executionMode.threadFactory(name);
+        this.metrics = StageMetrics.of("AssemblyDemo", name);
+        if (inputQueue != null) {
+            metrics.monitorQueue(inputQueue);
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getMaxWorkers() {
+        return maxWorkers;
+    }
+
+    int getActiveWorkers() {
+        return activeWorkers.get();
+    }
+
+    int getTargetWorkers() {
+        return targetWorkers;
+    }
+
+    int inputDepth() {
+        return inputQueue == null ? 0 : inputQueue.size();
+    }
+
+    int outputDepth() {
+        return outputQueue == null ? 0 : outputQueue.size();
+    }
+
+    void start(int initialWorkers) {
+        resize(initialWorkers);
+    }
+
+    /**
+     * Sets the desired amount of workers, clamped to the configured bounds.
+     * Called by the autoscaler and by a live change of the run's settings.
+     */
+    synchronized void resize(int desiredWorkers) {
+        targetWorkers = Math.max(minWorkers, Math.min(maxWorkers, desiredWorkers));
+        while (activeWorkers.get() < targetWorkers) {
+            spawnWorker();
+        }
+    }
+
+    /**
+     * Called by a worker between containers. Returns true when the pool is above its target size,
+     * in which case the calling worker must finish its loop.
+     */
+    boolean shouldRetire() {
+        while (true) {
+            int active = activeWorkers.get();
+            if (active <= targetWorkers) {
+                return false;
+            }
+            if (activeWorkers.compareAndSet(active, active - 1)) {
+                workers.remove(Thread.currentThread());
+                return true;
+            }
+        }
+    }
+
+    void recordServiceTime(long nanos) {
+        synchronized (serviceWindow) {
+            windowContainers++;
+            windowServiceNanos += nanos;
+        }
+        metrics.recordService(nanos);
+    }
+
+    /**
+     * Records how long the container waited in the input queue, see {@link Batching#publish}.
+     */
+    void recordQueueWait(Container container) {
+        if (container.getQueuedAt() == 0) {
+            return;
+        }
+        final long waitNanos = System.nanoTime() - container.getQueuedAt();
+        metrics.recordQueueWait(waitNanos);
+        if (container.getPriority() > 0) {
+            urgentContainers.increment();
+            urgentWaitNanos.add(waitNanos);
+            urgentMaxWaitNanos.accumulate(waitNanos);
+        }
+    }
+
+    /**
+     * Returns true if the container is past its deadline. The caller drops it then, before any stage work is spent on it.
+     */
+    boolean dropIfExpired(Container container) {
+        if (!container.isExpired(System.nanoTime())) {
+            return false;
+        }
+        expiredContainers.increment();
+        Log.debug("[%s] Dropped expired %s%n", name, container.getName());
+        return true;
+    }
+
+    /**
+     * Expired containers and the queue wait of urgent ones, i.e. containers with a positive priority.
+     */
+    String schedulingSummary() {
+        final long urgent = urgentContainers.sum();
+        return String.format("%s: %s expired, %s urgent waited avg %.1f ms, max %.1f ms", name, expiredContainers.sum(), urgent,
+                urgent == 0 ? 0.0 : urgentWaitNanos.sum() / 1e6 / urgent, urgentMaxWaitNanos.get() / 1e6);
+    }
+
+    /**
+     * Folds service times recorded since the previous call into a moving average and returns it.
+     * Returns 0 until the first container was processed by this stage.
+     */
+    double sampleServiceNanos() {
+        final long count;
+        final long nanos;
+        synchronized (serviceWindow) {
+            count = windowContainers;
+            nanos = windowServiceNanos;
+            windowContainers = 0;
+            windowServiceNanos = 0;
+        }
+        if (count > 0) {
+            double sample = (double) nanos / count;
+            serviceNanosEstimate = serviceNanosEstimate == 0 ? sample : 0.5 * serviceNanosEstimate + 0.5 * sample;
+        }
+        return serviceNanosEstimate;
+    }
+
+    boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Switches the pool to shutdown mode. The first stage stops taking in new containers, the others keep working
+     * until the poison pill reaches them. The autoscaler must be stopped before.
+     */
+    void drain() {
+        draining = true;
+    }
+
+    /**
+     * Called by a worker that took the poison pill: puts it back, so the next sibling stops as well.
+     */
+    void returnPoisonPill() throws InterruptedException {
+        inputQueue.put(POISON_PILL);
+    }
+
+    /**
+     * Waits until all workers exited or the deadline (a {@link System#nanoTime()} value) passed.
+     * Returns true if no worker is left.
+     */
+    boolean awaitTermination(long deadline) throws InterruptedException {
+        for (Thread worker : List.copyOf(workers)) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+        }
+        return activeWorkers.get() == 0;
+    }
+
+    /**
+     * Gives up on draining: interrupts every worker, containers in progress stay unfinished.
+     */
+    void interruptAll() {
+        aborted = true;
+        targetWorkers = 0;
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void passPoisonPillOn() {
+        if (!draining || aborted || outputQueue == null || activeWorkers.get() > 0 || !pillPassedOn.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            outputQueue.put(POISON_PILL);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The lowest priority keeps the pill behind every real container in a {@link PriorityStageQueue} as well.
+     */
+    private static Container poisonPill() {
+        final Container pill = new Container(0);
+        pill.setPriority(Integer.MIN_VALUE);
+        return pill;
+    }
+
+    private void spawnWorker() {
+        activeWorkers.incrementAndGet();
+        final Runnable worker = workerFactory.apply(this);
+        final Thread thread = threadFactory.newThread(() -> {
+            try {
+                worker.run();
+            } finally {
+                if (workers.remove(Thread.currentThread())) {
+                    activeWorkers.decrementAndGet();
+                }
+                passPoisonPillOn();
+            }
+        });
+        workers.add(thread);
+        thread.start();
+    }
+}
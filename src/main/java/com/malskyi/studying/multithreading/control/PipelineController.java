@@ -0,0 +1,106 @@
+package com.malskyi.studying.multithreading.control;
+
+import com.malskyi.studying.multithreading.Demo;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Control plane for the demos:
+ * <pre>
+ *  POST   /pipelines/{demo}            start a run, the body optionally overrides settings, e.g. {"queue.capacity": 20}
+ *  GET    /pipelines                   all runs
+ *  GET    /pipelines/{id}              settings and totals of a run
+ *  PATCH  /pipelines/{id}              change live settings, e.g. {"build.delay": 100, "build.workers": 6}
+ *  DELETE /pipelines/{id}              stop feeding and drain, like the end of the running time
+ *  GET    /pipelines/{id}/throughput   server-sent events with totals and per-second rates
+ * </pre>
+ */
+@RestController
+@RequestMapping("/pipelines")
+class PipelineController {
+    private static final long THROUGHPUT_INTERVAL = 1000L;
+
+    private final PipelineRuns runs;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "ThroughputTicker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    PipelineController(PipelineRuns runs) {
+        this.runs = runs;
+    }
+
+    @PostMapping("/{demo}")
+    @ResponseStatus(HttpStatus.CREATED)
+    PipelineRun.View start(@PathVariable String demo, @RequestBody(required = false) Map<String, Long> settings) {
+        return runs.start(Demo.of(demo), settings == null ? Map.of() : settings).view();
+    }
+
+    @GetMapping
+    List<PipelineRun.View> list() {
+        return runs.list().stream().map(PipelineRun::view).toList();
+    }
+
+    @GetMapping("/{id}")
+    PipelineRun.View get(@PathVariable long id) {
+        return runs.get(id).view();
+    }
+
+    @PatchMapping("/{id}")
+    PipelineRun.View tune(@PathVariable long id, @RequestBody Map<String, Long> settings) {
+        return runs.tune(id, settings).view();
+    }
+
+    @DeleteMapping("/{id}")
+    PipelineRun.View stop(@PathVariable long id) {
+        return runs.stop(id).view();
+    }
+
+    @GetMapping(path = "/{id}/throughput", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter throughput(@PathVariable long id) {
+        return ThroughputStream.open(runs.get(id), ticker, THROUGHPUT_INTERVAL);
+    }
+
+    @ExceptionHandler(NoSuchElementException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    Map<String, String> notFound(NoSuchElementException e) {
+        return Map.of("error", e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    Map<String, String> badRequest(IllegalArgumentException e) {
+        return Map.of("error", e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    Map<String, String> conflict(IllegalStateException e) {
+        return Map.of("error", e.getMessage());
+    }
+
+    @PreDestroy
+    void close() {
+        ticker.shutdownNow();
+        runs.list().forEach(PipelineRun::stop);
+    }
+}
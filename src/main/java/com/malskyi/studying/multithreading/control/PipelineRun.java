@@ -0,0 +1,117 @@
+package com.malskyi.studying.multithreading.control;
+
+import com.malskyi.studying.multithreading.Demo;
+import com.malskyi.studying.multithreading.RunControl;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * One run of a demo started through the API, on its own thread.
+ */
+final class PipelineRun {
+    enum State {RUNNING, STOPPING, FINISHED, FAILED}
+
+    /**
+     * What the API returns for a run.
+     */
+    record View(long id, String demo, State state, Instant startedAt, Instant finishedAt, String failure,
+                Map<String, Long> settings, Map<String, Long> totals) {
+    }
+
+    private final long id;
+    private final Demo demo;
+    private final RunControl control;
+    private final Thread thread;
+    private final Instant startedAt = Instant.now();
+    private volatile State state = State.RUNNING;
+    private volatile Instant finishedAt;
+    private volatile String failure;
+
+    PipelineRun(long id, Demo demo, Map<String, Long> overrides) {
+        this.id = id;
+        this.demo = demo;
+        this.control = new RunControl(overrides);
+        this.thread = Thread.ofPlatform().name("PipelineRun-" + id).unstarted(this::run);
+    }
+
+    long id() {
+        return id;
+    }
+
+    Demo demo() {
+        return demo;
+    }
+
+    RunControl control() {
+        return control;
+    }
+
+    State state() {
+        return state;
+    }
+
+    boolean isActive() {
+        return state == State.RUNNING || state == State.STOPPING;
+    }
+
+    /**
+     * Starts the run and returns once the demo has declared its settings.
+     *
+     * @throws IllegalArgumentException if an override named a setting the demo does not have; the run is stopped
+     *                                  and has ended by then
+     */
+    void start() {
+        thread.start();
+        try {
+            control.awaitSettingsDeclared();
+        } catch (IllegalArgumentException e) {
+            awaitEnd();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+            throw new IllegalStateException("Interrupted while starting run " + id, e);
+        }
+    }
+
+    /**
+     * Asks the demo to stop feeding and drain, as if its running time was over.
+     */
+    void stop() {
+        if (state == State.RUNNING) {
+            state = State.STOPPING;
+        }
+        control.requestStop();
+    }
+
+    private void awaitEnd() {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    View view() {
+        return new View(id, demo.id(), state, startedAt, finishedAt, failure, control.settings(), control.totals());
+    }
+
+    private void run() {
+        System.out.printf("[%s] Run %s of %s started%n", getClass().getSimpleName(), id, demo.id());
+        try {
+            demo.run(control);
+            state = State.FINISHED;
+        } catch (InterruptedException e) {
+            failure = "interrupted";
+            state = State.FAILED;
+        } catch (RuntimeException e) {
+            failure = e.toString();
+            state = State.FAILED;
+        } finally {
+            control.settingsDeclared();
+            finishedAt = Instant.now();
+            System.out.printf("[%s] Run %s of %s %s%n", getClass().getSimpleName(), id, demo.id(), state);
+        }
+    }
+}
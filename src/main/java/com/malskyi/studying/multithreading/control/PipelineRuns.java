@@ -0,0 +1,76 @@
+package com.malskyi.studying.multithreading.control;
+
+import com.malskyi.studying.multithreading.Demo;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs started through the API, by id. A demo keeps its ids and some counters in static fields, so only one run of
+ * each demo may be active at a time; finished runs are kept for inspection.
+ */
+@Service
+class PipelineRuns {
+    private final NavigableMap<Long, PipelineRun> runs = new ConcurrentSkipListMap<>();
+    private final AtomicLong ids = new AtomicLong(1);
+
+    /**
+     * @throws IllegalStateException    if the demo is already running
+     * @throws IllegalArgumentException if an override is below 1 or, as in {@link #tune}, names a setting the demo
+     *                                  does not have; such a run is not kept
+     */
+    synchronized PipelineRun start(Demo demo, Map<String, Long> overrides) {
+        for (PipelineRun run : runs.values()) {
+            if (run.demo() == demo && run.isActive()) {
+                throw new IllegalStateException("Demo " + demo.id() + " is already running as run " + run.id());
+            }
+        }
+        final PipelineRun run = new PipelineRun(ids.getAndIncrement(), demo, overrides);
+        runs.put(run.id(), run);
+        try {
+            run.start();
+        } catch (IllegalArgumentException e) {
+            runs.remove(run.id());
+            throw e;
+        }
+        return run;
+    }
+
+    Collection<PipelineRun> list() {
+        return runs.values();
+    }
+
+    /**
+     * @throws NoSuchElementException if there is no such run
+     */
+    PipelineRun get(long id) {
+        final PipelineRun run = runs.get(id);
+        if (run == null) {
+            throw new NoSuchElementException("No run " + id);
+        }
+        return run;
+    }
+
+    PipelineRun stop(long id) {
+        final PipelineRun run = get(id);
+        run.stop();
+        return run;
+    }
+
+    /**
+     * Changes live settings of an active run; stops at the first invalid one, the ones before it are applied.
+     */
+    PipelineRun tune(long id, Map<String, Long> settings) {
+        final PipelineRun run = get(id);
+        if (!run.isActive()) {
+            throw new IllegalStateException("Run " + id + " is " + run.state());
+        }
+        settings.forEach(run.control()::set);
+        return run;
+    }
+}
@@ -0,0 +1,67 @@
+package com.malskyi.studying.multithreading.control;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the totals of a run and their per-second rates since the previous event, until the run is over or the
+ * client goes away.
+ */
+final class ThroughputStream implements Runnable {
+    record Sample(long id, PipelineRun.State state, Map<String, Long> totals, Map<String, Long> perSecond) {
+    }
+
+    private final PipelineRun run;
+    private final SseEmitter emitter = new SseEmitter(0L);
+    private Map<String, Long> previous = Map.of();
+    private long previousAt = System.nanoTime();
+    private volatile ScheduledFuture<?> task;
+
+    private ThroughputStream(PipelineRun run) {
+        this.run = run;
+    }
+
+    static SseEmitter open(PipelineRun run, ScheduledExecutorService ticker, long intervalMillis) {
+        final ThroughputStream stream = new ThroughputStream(run);
+        stream.emitter.onCompletion(stream::cancel);
+        stream.emitter.onTimeout(stream::cancel);
+        stream.emitter.onError(e -> stream.cancel());
+        stream.task = ticker.scheduleAtFixedRate(stream, 0L, intervalMillis, TimeUnit.MILLISECONDS);
+        return stream.emitter;
+    }
+
+    @Override
+    public void run() {
+        final boolean active = run.isActive();
+        final long now = System.nanoTime();
+        final Map<String, Long> totals = run.control().totals();
+        final Map<String, Long> perSecond = new LinkedHashMap<>();
+        final long elapsed = Math.max(1L, now - previousAt);
+        totals.forEach((name, total) ->
+                perSecond.put(name, (total - previous.getOrDefault(name, 0L)) * TimeUnit.SECONDS.toNanos(1) / elapsed));
+        previous = totals;
+        previousAt = now;
+        try {
+            emitter.send(SseEmitter.event().name("throughput").data(new Sample(run.id(), run.state(), totals, perSecond)));
+            if (!active) {
+                cancel();
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            cancel();
+        }
+    }
+
+    private void cancel() {
+        final ScheduledFuture<?> scheduled = task;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+}
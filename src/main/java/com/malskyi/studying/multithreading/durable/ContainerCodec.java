@@ -0,0 +1,72 @@
+package com.malskyi.studying.multithreading.durable;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact binary form of a {@link Container}: status and priority as single fields, the deadline as epoch millis
+ * (a {@link System#nanoTime()} value means nothing after a restart) and the strings as length-prefixed UTF-8,
+ * -1 standing for null. The time the container was queued is not kept, it belongs to the running process.
+ */
+public final class ContainerCodec {
+    private static final ContainerStatus[] STATUSES = ContainerStatus.values();
+
+    private ContainerCodec() {
+    }
+
+    /**
+     * @throws java.nio.BufferOverflowException if the container does not fit into the remaining buffer
+     */
+    public static void encode(Container container, ByteBuffer buffer) {
+        putString(buffer, container.getName());
+        buffer.put((byte) container.getContainerStatus().ordinal());
+        buffer.putInt(container.getPriority());
+        buffer.putLong(container.getDeadline() == 0 ? 0L
+                : System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(container.getDeadline() - System.nanoTime()));
+        putString(buffer, container.getInitializedBy());
+        putString(buffer, container.getBuildBy());
+        putString(buffer, container.getDeployedBy());
+    }
+
+    public static Container decode(ByteBuffer buffer) {
+        final Container container = new Container(0);
+        container.setName(getString(buffer));
+        container.setContainerStatus(STATUSES[buffer.get()]);
+        container.setPriority(buffer.getInt());
+        final long deadline = buffer.getLong();
+        if (deadline != 0) {
+            container.setDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadline - System.currentTimeMillis()));
+        }
+        container.setInitializedBy(getString(buffer));
+        container.setBuildBy(getString(buffer));
+        container.setDeployedBy(getString(buffer));
+        return container;
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long to encode: " + bytes.length + " bytes");
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        final short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
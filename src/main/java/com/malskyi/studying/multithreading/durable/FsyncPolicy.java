@@ -0,0 +1,21 @@
+package com.malskyi.studying.multithreading.durable;
+
+/**
+ * When a {@link SegmentJournal} forces its appends to disk.
+ * Records are written to a memory-mapped file, so once appended they survive a crash or {@code System.exit} of the
+ * process anyway; forcing only protects them against a crash of the operating system. Forcing after a batch of
+ * records, or after a delay, pays one fsync for many containers.
+ *
+ * @param maxRecords     unforced records that trigger a force on the next append
+ * @param maxDelayMillis age of the oldest unforced record that triggers a force from the journal flusher, 0 for none
+ */
+public record FsyncPolicy(int maxRecords, long maxDelayMillis) {
+    public static final FsyncPolicy ALWAYS = new FsyncPolicy(1, 0L);
+    public static final FsyncPolicy NEVER = new FsyncPolicy(Integer.MAX_VALUE, 0L);
+
+    public FsyncPolicy {
+        if (maxRecords < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException(String.format("Invalid fsync policy: %s records, %s ms", maxRecords, maxDelayMillis));
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.malskyi.studying.multithreading.durable;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of containers in memory-mapped segment files, with acknowledgements.
+ * <p>
+ * {@link #append} writes a PUT record and returns its id, {@link #acknowledge} writes an ACK record for it. Opening a
+ * journal replays its segments: every PUT without an ACK is {@link #recovered()}, in append order. A record is
+ * {@code [length][crc32c][type][id][container]}; replay stops at the first zero length or checksum mismatch, so a torn
+ * tail of the last segment is ignored. A new journal always appends to a fresh segment, and a segment is deleted once
+ * it is not the active one and every PUT in it, as well as in all older segments, was acknowledged.
+ * <p>
+ * Appends are serialized by the journal's monitor; writing a record is a copy of about a hundred bytes into the
+ * mapped page cache, the {@link FsyncPolicy} decides how often the pages are forced to disk.
+ */
+public final class SegmentJournal implements AutoCloseable {
+    private static final byte PUT = 1;
+    private static final byte ACK = 2;
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 4096;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "JournalFlusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A container read back from the journal, with the id to acknowledge it by.
+     */
+    public record Entry(long id, Container container) {
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy policy;
+    private final NavigableMap<Long, Segment> segments = new TreeMap<>();
+    private final Map<Long, Segment> pending = new HashMap<>();
+    private final List<Entry> recovered;
+    private final ByteBuffer scratch = ByteBuffer.allocate(MAX_RECORD_SIZE);
+    private final CRC32C crc = new CRC32C();
+    private final ScheduledFuture<?> flusher;
+
+    private Segment active;
+    private long nextId;
+    private int unforcedRecords;
+    private long oldestUnforcedAt;
+    private long forces;
+    private boolean closed;
+
+    public SegmentJournal(Path directory, int segmentSize, FsyncPolicy policy) throws IOException {
+        if (segmentSize < 16 * MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + 16 * MAX_RECORD_SIZE + " bytes: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.policy = policy;
+        Files.createDirectories(directory);
+        this.recovered = replay();
+        this.active = openSegment(segments.isEmpty() ? 0 : segments.lastKey() + 1);
+        deleteAcknowledgedSegments();
+        this.flusher = policy.maxDelayMillis() == 0 ? null
+                : FLUSHER.scheduleWithFixedDelay(this::forceIfStale, policy.maxDelayMillis(), policy.maxDelayMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Containers appended but never acknowledged before the journal was opened, oldest first.
+     */
+    public List<Entry> recovered() {
+        return recovered;
+    }
+
+    /**
+     * @return the id to acknowledge the container by
+     */
+    public synchronized long append(Container container) {
+        final long id = nextId++;
+        scratch.clear();
+        scratch.put(PUT).putLong(id);
+        ContainerCodec.encode(container, scratch);
+        final Segment segment = write();
+        segment.pending++;
+        pending.put(id, segment);
+        return id;
+    }
+
+    /**
+     * Marks the containers as done, so they are not replayed. Unknown ids are ignored.
+     */
+    public synchronized void acknowledge(long... ids) {
+        for (long id : ids) {
+            final Segment segment = pending.remove(id);
+            if (segment == null) {
+                continue;
+            }
+            scratch.clear();
+            scratch.put(ACK).putLong(id);
+            write();
+            segment.pending--;
+        }
+        deleteAcknowledgedSegments();
+    }
+
+    public synchronized String summary() {
+        return String.format("%s: %s segments, %s unacknowledged, %s forces", directory.getFileName(), segments.size(), pending.size(), forces);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.cancel(false);
+        }
+        force();
+    }
+
+    /**
+     * Copies the record in {@link #scratch} into the active segment, rolling over to a new one if it does not fit.
+     * The length goes in last, replay treats a record without it as the end of the segment.
+     */
+    private Segment write() {
+        if (closed) {
+            throw new IllegalStateException("Journal " + directory + " is closed");
+        }
+        scratch.flip();
+        final int size = HEADER_SIZE + scratch.remaining();
+        if (active.buffer.remaining() < size + Integer.BYTES) {
+            force();
+            active = openSegment(active.number + 1);
+        }
+        crc.reset();
+        crc.update(scratch.duplicate());
+        final MappedByteBuffer buffer = active.buffer;
+        final int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        buffer.put(scratch);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        buffer.putInt(start, size - HEADER_SIZE);
+        if (unforcedRecords++ == 0) {
+            oldestUnforcedAt = System.nanoTime();
+        }
+        if (unforcedRecords >= policy.maxRecords()) {
+            force();
+        }
+        return active;
+    }
+
+    private synchronized void forceIfStale() {
+        if (!closed && unforcedRecords > 0
+                && System.nanoTime() - oldestUnforcedAt >= TimeUnit.MILLISECONDS.toNanos(policy.maxDelayMillis())) {
+            force();
+        }
+    }
+
+    private void force() {
+        if (unforcedRecords == 0) {
+            return;
+        }
+        final int position = active.buffer.position();
+        active.buffer.force(active.forcedUpTo, position - active.forcedUpTo);
+        active.forcedUpTo = position;
+        unforcedRecords = 0;
+        forces++;
+    }
+
+    /**
+     * Acknowledgements always come after their PUT, so deleting from the oldest segment on never brings back a PUT
+     * whose ACK was deleted.
+     */
+    private void deleteAcknowledgedSegments() {
+        while (true) {
+            final Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active || oldest.pending > 0) {
+                return;
+            }
+            segments.pollFirstEntry();
+            try {
+                Files.deleteIfExists(oldest.path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private List<Entry> replay() throws IOException {
+        final List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX) && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        final Map<Long, Entry> unacknowledged = new LinkedHashMap<>();
+        for (Path file : files) {
+            final Segment segment = mapSegment(file, FileChannel.MapMode.READ_ONLY, Files.size(file));
+            segments.put(segment.number, segment);
+            final MappedByteBuffer buffer = segment.buffer;
+            while (buffer.remaining() >= HEADER_SIZE) {
+                final int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining() - Integer.BYTES) {
+                    break;
+                }
+                final int checksum = buffer.getInt();
+                final ByteBuffer record = buffer.slice(buffer.position(), length);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                buffer.position(buffer.position() + length);
+                final byte type = record.get();
+                final long id = record.getLong();
+                nextId = Math.max(nextId, id + 1);
+                if (type == PUT) {
+                    unacknowledged.put(id, new Entry(id, ContainerCodec.decode(record)));
+                    pending.put(id, segment);
+                    segment.pending++;
+                } else if (unacknowledged.remove(id) != null) {
+                    pending.remove(id).pending--;
+                }
+            }
+        }
+        return List.copyOf(unacknowledged.values());
+    }
+
+    private Segment openSegment(long number) {
+        final Path file = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        try {
+            final Segment segment = mapSegment(file, FileChannel.MapMode.READ_WRITE, segmentSize);
+            segments.put(number, segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The mapping stays valid after the channel is closed; it is released when the buffer is garbage collected.
+     */
+    private static Segment mapSegment(Path file, FileChannel.MapMode mode, long size) throws IOException {
+        final String name = file.getFileName().toString();
+        final long number = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        final StandardOpenOption[] options = mode == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE};
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            return new Segment(number, file, channel.map(mode, 0, size));
+        }
+    }
+
+    private static final class Segment {
+        private final long number;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int pending;
+        private int forcedUpTo;
+
+        private Segment(long number, Path path, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
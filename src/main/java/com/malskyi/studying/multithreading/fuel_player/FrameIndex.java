@@ -0,0 +1,306 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Byte offset and first sample of every MPEG audio frame of a file, so a position in the track can be turned into
+ * a file offset to start reading at instead of scanning all frames before it.
+ * <p>
+ * The index is built by parsing the frame headers only, without decoding, and cached on disk next to the size and
+ * modification time of the file it was built from.
+ */
+final class FrameIndex {
+    /**
+     * Layer III frames may take up to this many bytes of their data from the frames before them (the bit reservoir),
+     * so the frames holding them are decoded and dropped before the first one played. At 32 kbps a frame is about a
+     * hundred bytes, so that can be five frames or more.
+     */
+    static final int MAX_RESERVOIR_BYTES = 511;
+    /**
+     * Header, CRC and the largest side info, i.e. the most of a frame that is not reservoir data.
+     */
+    private static final int MAX_FRAME_OVERHEAD = 4 + 2 + 32;
+
+    private static final int CACHE_MAGIC = 0x46494458;
+    private static final int CACHE_VERSION = 2;
+    /**
+     * Version, layer and sample rate bits; they stay the same for every frame of a file.
+     */
+    private static final int FIXED_HEADER_BITS = 0xFFFE0C00;
+
+    private static final int[][] BITRATES = {
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448}, // MPEG-1 layer I
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},    // MPEG-1 layer II
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},     // MPEG-1 layer III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},    // MPEG-2/2.5 layer I
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},         // MPEG-2/2.5 layers II and III
+    };
+    private static final int[][] SAMPLE_RATES = {
+            {11025, 12000, 8000},  // MPEG-2.5
+            {},
+            {22050, 24000, 16000}, // MPEG-2
+            {44100, 48000, 32000}, // MPEG-1
+    };
+
+    /**
+     * Where to start reading and what to play from there.
+     *
+     * @param offset        byte offset of the first frame to decode
+     * @param prerollFrames frames to decode and drop before the first played one
+     * @param frames        frames to play
+     * @param startSample   samples per channel to drop from the first played frame
+     * @param endSample     samples per channel to keep from the last played frame, -1 for all
+     */
+    record Seek(long offset, int prerollFrames, int frames, int startSample, int endSample) {
+    }
+
+    private final int sampleRate;
+    private final int channels;
+    private final long[] offsets;
+    private final long[] firstSamples;
+    private final long totalSamples;
+
+    private FrameIndex(int sampleRate, int channels, long[] offsets, long[] firstSamples, long totalSamples) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.offsets = offsets;
+        this.firstSamples = firstSamples;
+        this.totalSamples = totalSamples;
+    }
+
+    /**
+     * Reads the index of {@code file} from {@code cacheDirectory}, or builds it and stores it there.
+     * A cache that cannot be written only costs a rescan next time.
+     */
+    static FrameIndex load(Path file, Path cacheDirectory) throws IOException {
+        final Path cache = cacheDirectory.resolve(file.getFileName() + ".idx");
+        final long size = Files.size(file);
+        final long lastModified = Files.getLastModifiedTime(file).toMillis();
+        if (Files.exists(cache)) {
+            final FrameIndex cached = read(cache, size, lastModified);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final FrameIndex index = scan(file);
+        try {
+            Files.createDirectories(cacheDirectory);
+            index.write(cache, size, lastModified);
+        } catch (IOException e) {
+            System.out.printf("[%s] Could not cache the index of %s: %s%n", FrameIndex.class.getSimpleName(), file, e);
+        }
+        return index;
+    }
+
+    static FrameIndex scan(Path file) throws IOException {
+        final ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final int size = data.limit();
+        long[] offsets = new long[1024];
+        long[] firstSamples = new long[1024];
+        int count = 0;
+        long samples = 0;
+        int fixedBits = 0;
+        int sampleRate = 0;
+        int channels = 0;
+        int position = id3v2Size(data);
+        while (position + 4 <= size) {
+            final int header = data.getInt(position);
+            final int length = frameLength(header);
+            if (length <= 0 || position + length > size || count > 0 && (header & FIXED_HEADER_BITS) != fixedBits
+                    || count == 0 && !followedByFrame(data, position + length, header)) {
+                position++;
+                continue;
+            }
+            if (count == 0) {
+                fixedBits = header & FIXED_HEADER_BITS;
+                sampleRate = sampleRate(header);
+                channels = channels(header);
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                firstSamples = Arrays.copyOf(firstSamples, count * 2);
+            }
+            offsets[count] = position;
+            firstSamples[count] = samples;
+            count++;
+            samples += samplesPerFrame(header);
+            position += length;
+        }
+        if (count == 0) {
+            throw new IOException("No MPEG audio frames in " + file);
+        }
+        return new FrameIndex(sampleRate, channels, Arrays.copyOf(offsets, count), Arrays.copyOf(firstSamples, count), samples);
+    }
+
+    int frameCount() {
+        return offsets.length;
+    }
+
+    int sampleRate() {
+        return sampleRate;
+    }
+
+    int channels() {
+        return channels;
+    }
+
+    long durationMillis() {
+        return totalSamples * 1000 / sampleRate;
+    }
+
+    /**
+     * Plays the whole track, up to the end of the stream.
+     */
+    Seek all() {
+        return new Seek(offsets[0], 0, Integer.MAX_VALUE, 0, -1);
+    }
+
+    /**
+     * Plays {@code [startMillis, endMillis)}, clamped to the track, to the sample.
+     */
+    Seek seek(long startMillis, long endMillis) {
+        final long startSample = Math.min(sample(startMillis), totalSamples);
+        final long endSample = Math.max(startSample, Math.min(sample(endMillis), totalSamples));
+        if (startSample == endSample) {
+            return new Seek(offsets[0], 0, 0, 0, 0);
+        }
+        final int first = frameOf(startSample);
+        final int last = frameOf(endSample - 1);
+        final int preroll = prerollFrames(first);
+        return new Seek(offsets[first - preroll], preroll, last - first + 1,
+                (int) (startSample - firstSamples[first]), (int) (endSample - firstSamples[last]));
+    }
+
+    /**
+     * Frames right before {@code frame} that hold at least {@link #MAX_RESERVOIR_BYTES} of data, or all of them.
+     */
+    private int prerollFrames(int frame) {
+        int preroll = 0;
+        long covered = 0;
+        while (preroll < frame && covered < MAX_RESERVOIR_BYTES) {
+            preroll++;
+            covered += offsets[frame - preroll + 1] - offsets[frame - preroll] - MAX_FRAME_OVERHEAD;
+        }
+        return preroll;
+    }
+
+    private long sample(long millis) {
+        return Math.max(0, Math.round(millis * (double) sampleRate / 1000));
+    }
+
+    private int frameOf(long sample) {
+        final int found = Arrays.binarySearch(firstSamples, sample);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private static FrameIndex read(Path cache, long size, long lastModified) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_VERSION || in.readLong() != size || in.readLong() != lastModified) {
+                return null;
+            }
+            final int sampleRate = in.readInt();
+            final int channels = in.readInt();
+            final long totalSamples = in.readLong();
+            final int count = in.readInt();
+            final long[] offsets = new long[count];
+            final long[] firstSamples = new long[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readLong();
+                firstSamples[i] = in.readLong();
+            }
+            return new FrameIndex(sampleRate, channels, offsets, firstSamples, totalSamples);
+        }
+    }
+
+    private void write(Path cache, long size, long lastModified) throws IOException {
+        final Path temporary = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(CACHE_VERSION);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeInt(sampleRate);
+            out.writeInt(channels);
+            out.writeLong(totalSamples);
+            out.writeInt(offsets.length);
+            for (int i = 0; i < offsets.length; i++) {
+                out.writeLong(offsets[i]);
+                out.writeLong(firstSamples[i]);
+            }
+        }
+        Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Size of a leading ID3v2 tag, 0 if there is none.
+     */
+    private static int id3v2Size(ByteBuffer data) {
+        if (data.limit() < 10 || data.get(0) != 'I' || data.get(1) != 'D' || data.get(2) != '3') {
+            return 0;
+        }
+        final int size = (data.get(6) & 0x7F) << 21 | (data.get(7) & 0x7F) << 14 | (data.get(8) & 0x7F) << 7 | data.get(9) & 0x7F;
+        final boolean footer = (data.get(5) & 0x10) != 0;
+        return 10 + size + (footer ? 10 : 0);
+    }
+
+    /**
+     * A sync word can occur inside audio data; the first frame only counts if another one follows it.
+     */
+    private static boolean followedByFrame(ByteBuffer data, int position, int header) {
+        return position + 4 > data.limit()
+                || frameLength(data.getInt(position)) > 0 && (data.getInt(position) & FIXED_HEADER_BITS) == (header & FIXED_HEADER_BITS);
+    }
+
+    /**
+     * @return the frame length in bytes, or -1 if {@code header} is not a valid frame header
+     */
+    static int frameLength(int header) {
+        final int version = header >>> 19 & 3;
+        final int layer = header >>> 17 & 3;
+        final int bitrateIndex = header >>> 12 & 0xF;
+        final int sampleRateIndex = header >>> 10 & 3;
+        if (header >>> 21 != 0x7FF || version == 1 || layer == 0 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return -1;
+        }
+        final int bitrate = BITRATES[version == 3 ? 3 - layer : layer == 3 ? 3 : 4][bitrateIndex] * 1000;
+        final int sampleRate = SAMPLE_RATES[version][sampleRateIndex];
+        final int padding = header >>> 9 & 1;
+        return layer == 3
+                ? (12 * bitrate / sampleRate + padding) * 4
+                : samplesPerFrame(header) / 8 * bitrate / sampleRate + padding;
+    }
+
+    private static int samplesPerFrame(int header) {
+        final int version = header >>> 19 & 3;
+        return switch (header >>> 17 & 3) {
+            case 3 -> 384;
+            case 2 -> 1152;
+            default -> version == 3 ? 1152 : 576;
+        };
+    }
+
+    private static int sampleRate(int header) {
+        return SAMPLE_RATES[header >>> 19 & 3][header >>> 10 & 3];
+    }
+
+    /**
+     * Mode 3 is single channel; stereo, joint stereo and dual channel all decode to two.
+     */
+    private static int channels(int header) {
+        return (header >>> 6 & 3) == 3 ? 1 : 2;
+    }
+}
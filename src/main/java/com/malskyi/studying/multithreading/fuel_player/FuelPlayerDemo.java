@@ -1,21 +1,44 @@
 package com.malskyi.studying.multithreading.fuel_player;
 
+import com.malskyi.studying.multithreading.ExecutionMode;
 import javazoom.jl.decoder.*;
 import javazoom.jl.player.AudioDevice;
-import javazoom.jl.player.Player;
+import javazoom.jl.player.FactoryRegistry;
 
 import javax.sound.sampled.Clip;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.InputStream;
-import java.lang.reflect.Field;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 public class FuelPlayerDemo {
     private static final String FUEL_PATH = "music/Metallica-Fuel.mp3";
-    private static final double FRAMES_PER_SECOND = 38.359;
+    private static final Path INDEX_CACHE_DIRECTORY = Path.of("target", "fuel-index");
+    private static final int READ_AHEAD_FRAMES = 64;
+    private static final int PREFETCH_CHUNK_SIZE = 16 * 1024;
+    private static final int PREFETCH_CHUNKS = 8;
+    private static final long PCM_CACHE_BYTES = 32L << 20;
+    private static final boolean PRE_DECODE_SECTIONS = true;
+    private static final PlayerType PLAYER_TYPE = PlayerType.MIXER;
+    private static final int MAX_STREAMS = 8;
+    private static final ExecutionMode DECODER_THREADS = ExecutionMode.VIRTUAL;
+    private static final int[][] SECTIONS = {
+            {0, 4800}, {14000, 18000}, {41000, 44000}, {53000, 74000}, {128000, 148000}, {153000, 215000}
+    };
     private static boolean isPreviewEnabled = false;
 
+    /**
+     * {@link #JLAYER} plays one section at a time, each on its own device and threads; {@link #MIXER} plays
+     * sections on top of each other through one device, see {@link Mixer}.
+     */
+    private enum PlayerType {
+        JLAYER, MIXER
+    }
+
     private interface FuelPlayer {
         void start();
 
@@ -28,13 +51,61 @@ public class FuelPlayerDemo {
         void stop();
 
         boolean isPlaying();
+
+        /**
+         * Stops playback for good and releases the audio device and threads, on exit.
+         */
+        void close();
     }
 
-    public static class AdvancedAudioPlayer extends Player {
-        private boolean isPaused = false;
+    /**
+     * MP3 player core owning its {@link Bitstream}, {@link Decoder} and {@link AudioDevice}, as a three-stage pipeline:
+     * <ul>
+     *     <li>a reader thread prefetching the MP3 data, see {@link PrefetchingInputStream}</li>
+     *     <li>a decoder thread decoding frames into a {@link PcmRing} of {@code readAheadFrames} frames</li>
+     *     <li>the thread calling {@code play}, draining the ring to the device</li>
+     * </ul>
+     * A slow decode or read only eats into the read-ahead instead of stalling the device, and while paused only the
+     * playback thread waits, so the decoder fills the ring before playback resumes. No stage allocates per frame.
+     * A player created without a stream only plays clips that were decoded before, see {@link PcmCache}.
+     */
+    public static class AdvancedAudioPlayer {
+        private final PrefetchingInputStream input;
+        private final Bitstream bitstream;
+        private final Decoder decoder;
+        private final AudioDevice audio;
+        private final PcmRing ring;
+        private volatile boolean isPaused = false;
+        private volatile boolean closed = false;
+        private volatile boolean complete = false;
+        private volatile boolean endOfStream = false;
+        private volatile Exception decodeFailure;
+        private volatile long playedFrames = 0;
 
         public AdvancedAudioPlayer(InputStream stream) throws JavaLayerException {
-            super(stream);
+            this(stream, READ_AHEAD_FRAMES);
+        }
+
+        public AdvancedAudioPlayer(InputStream stream, int readAheadFrames) throws JavaLayerException {
+            this(stream, readAheadFrames, FactoryRegistry.systemRegistry().createAudioDevice());
+        }
+
+        public AdvancedAudioPlayer(AudioDevice audio) throws JavaLayerException {
+            this.ring = null;
+            this.input = null;
+            this.bitstream = null;
+            this.decoder = new Decoder();
+            this.audio = audio;
+            audio.open(decoder);
+        }
+
+        public AdvancedAudioPlayer(InputStream stream, int readAheadFrames, AudioDevice audio) throws JavaLayerException {
+            this.ring = new PcmRing(readAheadFrames, Obuffer.OBUFFERSIZE);
+            this.input = new PrefetchingInputStream(stream, PREFETCH_CHUNK_SIZE, PREFETCH_CHUNKS);
+            this.bitstream = new Bitstream(input);
+            this.decoder = new Decoder();
+            this.audio = audio;
+            audio.open(decoder);
         }
 
         public void pause() {
@@ -44,153 +115,183 @@ public class FuelPlayerDemo {
         public void resume() {
             this.isPaused = false;
             synchronized (this) {
-                this.notify();
+                this.notifyAll();
             }
         }
 
-        @Override
+        /**
+         * Plays up to {@code frames} frames from the current position.
+         *
+         * @return false if the end of the stream was reached or the player was closed
+         */
         public boolean play(int frames) throws JavaLayerException {
-            try {
-                Field audioField = getClass().getSuperclass().getDeclaredField("audio");
-                Field completeField = getClass().getSuperclass().getDeclaredField("complete");
-                Field closedField = getClass().getSuperclass().getDeclaredField("closed");
-                audioField.setAccessible(true);
-                completeField.setAccessible(true);
-                closedField.setAccessible(true);
-
-                boolean ret = true;
-
-                int frameNumber = 0;
-                while (frames-- > 0 && ret) {
-                    synchronized (this) {
-                        if (isPaused) {
-                            wait();
-                        }
-                    }
-                    ret = decodeFrame(frameNumber);
-                    frameNumber++;
-                }
+            return play(0, frames);
+        }
 
-                if (!ret) {
-                    AudioDevice out = (AudioDevice) audioField.get(this);
-                    if (out != null) {
-                        out.flush();
-                        synchronized (this) {
-                            completeField.set(this, (!(boolean) closedField.get(this)));
-                            close();
-                        }
-                    }
+        /**
+         * Skips {@code startFrame} frames without decoding them, then plays up to {@code endFrame}.
+         */
+        public boolean play(int startFrame, int endFrame) throws JavaLayerException {
+            return play(startFrame, 0, Math.max(0, endFrame - startFrame), 0, -1, null);
+        }
+
+        /**
+         * Plays a section found in a {@link FrameIndex}; the stream must start at {@link FrameIndex.Seek#offset()}.
+         */
+        public boolean play(FrameIndex.Seek seek) throws JavaLayerException {
+            return play(seek, null);
+        }
+
+        /**
+         * Plays a section and, if it was played to its end and {@code cache} can hold it, keeps its samples there.
+         */
+        public boolean play(FrameIndex.Seek seek, PcmCache cache) throws JavaLayerException {
+            final PcmClip.Builder recording = cache != null && cache.accepts(SectionDecoder.capacity(seek) * (long) Short.BYTES)
+                    ? new PcmClip.Builder(SectionDecoder.capacity(seek)) : null;
+            final boolean ret = play(0, seek.prerollFrames(), seek.frames(), seek.startSample(), seek.endSample(), recording);
+            if (recording != null && !closed && decodeFailure == null) {
+                cache.put(seek, recording.build(decoder.getOutputFrequency(), decoder.getOutputChannels()));
+            }
+            return ret;
+        }
+
+        /**
+         * Plays a clip decoded before, from the calling thread, in frame-sized writes.
+         */
+        public boolean play(PcmClip clip) throws JavaLayerException {
+            final short[] samples = clip.samples();
+            int position = 0;
+            while (position < samples.length && !closed) {
+                if (isPaused) {
+                    awaitResumed();
                 }
-                System.out.println("frameNumber=" + frameNumber);
-                return ret;
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                throw new RuntimeException(e);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+                final int length = Math.min(Obuffer.OBUFFERSIZE, samples.length - position);
+                write(samples, position, length);
+                position += length;
             }
+            return !closed;
         }
 
-        public boolean play(int startFrame, int endFrame) throws JavaLayerException {
-            int frames = endFrame - startFrame;
+        /**
+         * @param endSample samples per channel to keep from the last frame, -1 for all
+         * @param recording where to also copy the decoded samples to, or null
+         */
+        private boolean play(int skipFrames, int prerollFrames, int frames, int startSample, int endSample,
+                             PcmClip.Builder recording) throws JavaLayerException {
+            if (bitstream == null) {
+                throw new IllegalStateException("Player has no stream to decode");
+            }
+            final Thread decoding = new Thread(() -> decode(skipFrames, prerollFrames, frames, startSample, endSample, recording), "FuelDecoder");
+            decoding.start();
+            int framesPlayed = 0;
             try {
-                Field audioField = getClass().getSuperclass().getDeclaredField("audio");
-                Field completeField = getClass().getSuperclass().getDeclaredField("complete");
-                Field closedField = getClass().getSuperclass().getDeclaredField("closed");
-                audioField.setAccessible(true);
-                completeField.setAccessible(true);
-                closedField.setAccessible(true);
-
-                boolean ret = true;
-
-                int currentFrameNumber = 0;
-                while (frames-- > 0 && ret) {
-                    synchronized (this) {
-                        if (isPaused) {
-                            wait();
-                        }
+                while (true) {
+                    if (isPaused) {
+                        awaitResumed();
                     }
-                    ret = decodeFrame(currentFrameNumber, startFrame);
-                    currentFrameNumber++;
+                    if (!ring.take(this::write)) {
+                        break;
+                    }
+                    framesPlayed++;
                 }
+                decoding.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new JavaLayerException("Interrupted while playing", e);
+            } catch (JavaLayerException | RuntimeException e) {
+                close();
+                throw e;
+            }
+            ring.reset();
+            if (decodeFailure != null) {
+                close();
+                throw new JavaLayerException("Exception decoding audio frame", decodeFailure);
+            }
 
-                if (!ret) {
-                    AudioDevice out = (AudioDevice) audioField.get(this);
-                    if (out != null) {
-                        out.flush();
-                        synchronized (this) {
-                            completeField.set(this, (!(boolean) closedField.get(this)));
-                            close();
-                        }
+            final boolean ret = !endOfStream && !closed;
+            if (endOfStream) {
+                synchronized (this) {
+                    if (!closed) {
+                        audio.flush();
+                        complete = true;
+                        close();
                     }
                 }
-                System.out.println("frameNumber=" + currentFrameNumber);
-                return ret;
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                throw new RuntimeException(e);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
             }
+            playedFrames += framesPlayed;
+            return ret;
         }
 
-        protected boolean decodeFrame(int frameNumber) throws JavaLayerException {
-            return decodeFrame(frameNumber, 0);
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (ring != null) {
+                ring.close();
+                input.close();
+            }
+            audio.close();
+            notifyAll();
         }
 
-        private boolean decodeFrame(int frameNumber, int framesToSkip) throws JavaLayerException {
-            try {
-                Field bitstreamField = getClass().getSuperclass().getDeclaredField("bitstream");
-                Field audioField = getClass().getSuperclass().getDeclaredField("audio");
-                Field decoderField = getClass().getSuperclass().getDeclaredField("decoder");
-
-
-                audioField.setAccessible(true);
-                bitstreamField.setAccessible(true);
-                decoderField.setAccessible(true);
+        public boolean isComplete() {
+            return complete;
+        }
 
-                try {
-                    AudioDevice audio = (AudioDevice) audioField.get(this);
-                    Bitstream bitstream = (Bitstream) bitstreamField.get(this);
-                    Decoder decoder = (Decoder) decoderField.get(this);
-                    AudioDevice out = audio;
-                    if (out == null)
-                        return false;
-
-                    Header h = bitstream.readFrame();
-
-                    if (h == null)
-                        return false;
-
-                    if (frameNumber < framesToSkip) {
-//                        decoder.decodeFrame(h, bitstream);
-                        bitstream.closeFrame();
-                        return true;
-                    }
+        /**
+         * Frames played from the stream and the times playback found none decoded yet, i.e. audible gaps.
+         */
+        public String summary() {
+            return ring == null
+                    ? "Played cached clips"
+                    : "Played " + playedFrames + " frames, " + ring.underruns() + " underruns";
+        }
 
-                    // sample buffer set when decoder constructed
-                    SampleBuffer output = (SampleBuffer) decoder.decodeFrame(h, bitstream);
+        /**
+         * @return milliseconds played so far
+         */
+        public int getPosition() {
+            return audio.getPosition();
+        }
 
-                    synchronized (this) {
-                        out = audio;
-                        if (out != null) {
-                            out.write(output.getBuffer(), 0, output.getBufferLength());
-                        }
-                    }
+        private synchronized void awaitResumed() throws JavaLayerException {
+            try {
+                while (isPaused && !closed) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JavaLayerException("Interrupted while paused", e);
+            }
+        }
 
-                    bitstream.closeFrame();
-                } catch (RuntimeException ex) {
-                    throw new JavaLayerException("Exception decoding audio frame", ex);
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                } catch (DecoderException e) {
-                    throw new RuntimeException(e);
-                } catch (JavaLayerException e) {
-                    throw new RuntimeException(e);
+        /**
+         * Decoder stage, see {@link SectionDecoder#decode}.
+         */
+        private void decode(int skipFrames, int prerollFrames, int frames, int startSample, int endSample,
+                            PcmClip.Builder recording) {
+            final SectionDecoder.FrameSink sink = recording == null ? ring::put : (samples, offset, length) ->
+                    recording.append(samples, offset, length) && ring.put(samples, offset, length);
+            try {
+                endOfStream = !SectionDecoder.decode(bitstream, decoder, skipFrames, prerollFrames, frames, startSample, endSample, sink);
+            } catch (JavaLayerException | RuntimeException e) {
+                if (!closed) {
+                    decodeFailure = e;
                 }
-            } catch (NoSuchFieldException e) {
-                throw new RuntimeException(e);
+            } finally {
+                ring.finish();
             }
+        }
 
-            return true;
+        /**
+         * Playback stage: hands a frame to the device, which {@link #close()} must not close mid-write.
+         */
+        private synchronized void write(short[] samples, int offset, int length) throws JavaLayerException {
+            if (!closed) {
+                audio.write(samples, offset, length);
+            }
         }
     }
 
@@ -199,68 +300,87 @@ public class FuelPlayerDemo {
     public static class FuelPlayerJLayer implements FuelPlayer {
         private boolean isRunning = true;
         private boolean isPaused = false;
+        private final Path audioFile;
+        private final FrameIndex index;
+        private final PcmCache cache = new PcmCache(PCM_CACHE_BYTES);
         private AdvancedAudioPlayer player;
         private PlayerRunThread playerRunThread;
 
         public FuelPlayerJLayer() {
             try {
-                this.player = initPlayer();
+                this.audioFile = fuelFile();
+                this.index = loadIndex(audioFile);
+                this.player = initPlayer(0);
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
             }
+            if (PRE_DECODE_SECTIONS) {
+                preDecodeSections(audioFile, index, cache);
+            }
         }
 
-        private AdvancedAudioPlayer initPlayer() throws Exception {
+        /**
+         * Opens the file positioned at {@code offset}, as found in the {@link FrameIndex}.
+         */
+        private AdvancedAudioPlayer initPlayer(long offset) throws Exception {
             this.isPaused = false;
-            ClassLoader classloader = Thread.currentThread().getContextClassLoader();
-            File audioFile = new File(classloader.getResource(FUEL_PATH).toURI());
-            FileInputStream fileInputStream = new FileInputStream(audioFile);
-            return new AdvancedAudioPlayer(fileInputStream);
+            FileChannel channel = FileChannel.open(audioFile, StandardOpenOption.READ);
+            channel.position(offset);
+            return new AdvancedAudioPlayer(Channels.newInputStream(channel));
         }
 
         @Override
         public void start() {
-            try {
-                this.player = initPlayer();
-                this.playerRunThread = new PlayerRunThread(0);
-                this.playerRunThread.start();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
-            }
+            start(index.all());
             System.out.println("Now playing!");
         }
 
         private class PlayerRunThread extends Thread {
-            private final int startFrame;
-            private final int endFrame;
-
-            private PlayerRunThread(int startFrame) {
-                this.startFrame = startFrame;
-                this.endFrame = Integer.MAX_VALUE;
-            }
-
-            private PlayerRunThread(int startFrame, int endFrame) {
-                this.startFrame = startFrame;
-                this.endFrame = endFrame;
+            private final AdvancedAudioPlayer player;
+            private final FrameIndex.Seek seek;
+            private final PcmClip clip;
+
+            private PlayerRunThread(AdvancedAudioPlayer player, FrameIndex.Seek seek, PcmClip clip) {
+                this.player = player;
+                this.seek = seek;
+                this.clip = clip;
             }
 
             @Override
             public void run() {
                 try {
-                    player.play(startFrame, endFrame);
+                    if (clip != null) {
+                        player.play(clip);
+                    } else {
+                        player.play(seek, cache);
+                    }
                 } catch (JavaLayerException e) {
                     throw new RuntimeException(e);
                 }
             }
         }
 
+        /**
+         * Stops what is playing and plays the section from the cache, or jumps straight to it through the index.
+         */
         @Override
         public void start(int startTimeMillis, int endTimeMillis) {
+            start(index.seek(startTimeMillis, endTimeMillis));
+        }
+
+        private void start(FrameIndex.Seek seek) {
             try {
-                this.player = initPlayer();
-                int startFrame = startTimeMillis > 0 ? (int) (startTimeMillis / FRAMES_PER_SECOND) : 0;
-                int endFrame = (int) (endTimeMillis / FRAMES_PER_SECOND);
-                this.playerRunThread = new PlayerRunThread(startFrame, endFrame);
+                if (this.player != null) {
+                    this.player.close();
+                }
+                PcmClip clip = cache.get(seek);
+                if (clip != null) {
+                    this.isPaused = false;
+                    this.player = new AdvancedAudioPlayer(new PcmAudioDevice(clip.sampleRate(), clip.channels()));
+                } else {
+                    this.player = initPlayer(seek.offset());
+                }
+                this.playerRunThread = new PlayerRunThread(player, seek, clip);
                 this.playerRunThread.start();
             } catch (Exception e) {
                 throw new RuntimeException(e);
@@ -282,14 +402,131 @@ public class FuelPlayerDemo {
         @Override
         public void stop() {
             player.close();
+            System.out.println(player.summary());
+            System.out.println(cache.summary());
         }
 
         @Override
         public boolean isPlaying() {
             return player != null && !player.isComplete();
         }
+
+        @Override
+        public void close() {
+            stop();
+        }
     }
 
+    /**
+     * Plays every section it is started with at the same time, mixed through one device: a new {@code start} adds
+     * a stream instead of replacing what is playing, and pause, resume and stop apply to all streams.
+     */
+    public static class FuelPlayerMixed implements FuelPlayer {
+        private final FrameIndex index;
+        private final PcmCache cache = new PcmCache(PCM_CACHE_BYTES);
+        private final Mixer mixer;
+
+        public FuelPlayerMixed() {
+            try {
+                Path audioFile = fuelFile();
+                this.index = loadIndex(audioFile);
+                this.mixer = new Mixer(audioFile, index.sampleRate(), index.channels(), MAX_STREAMS, READ_AHEAD_FRAMES,
+                        DECODER_THREADS.threadFactory("FuelDecoder"));
+                if (PRE_DECODE_SECTIONS) {
+                    preDecodeSections(audioFile, index, cache);
+                }
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        @Override
+        public void start() {
+            start(index.all());
+            System.out.println("Now playing!");
+        }
+
+        @Override
+        public void start(int startTimeMillis, int endTimeMillis) {
+            start(index.seek(startTimeMillis, endTimeMillis));
+        }
+
+        /**
+         * Adds the section to the mix, unless MAX_STREAMS sections are playing already.
+         */
+        private void start(FrameIndex.Seek seek) {
+            try {
+                PcmClip clip = cache.get(seek);
+                Mixer.Stream stream = clip != null ? mixer.play(clip) : mixer.play(seek, cache);
+                System.out.printf("[%s] %s started, %s streams playing%n", getClass().getSimpleName(), stream, mixer.streams().size());
+            } catch (IllegalStateException e) {
+                System.out.printf("[%s] Section refused: %s%n", getClass().getSimpleName(), e.getMessage());
+            }
+        }
+
+        @Override
+        public void pause() {
+            mixer.streams().forEach(Mixer.Stream::pause);
+        }
+
+        @Override
+        public void resume() {
+            mixer.streams().forEach(Mixer.Stream::resume);
+        }
+
+        @Override
+        public void stop() {
+            List<Mixer.Stream> streams = mixer.streams();
+            streams.forEach(Mixer.Stream::stop);
+            streams.forEach(System.out::println);
+            System.out.println(mixer.summary());
+            System.out.println(cache.summary());
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return mixer.streams().stream().anyMatch(stream -> !stream.isPaused());
+        }
+
+        @Override
+        public void close() {
+            stop();
+            mixer.close();
+        }
+    }
+
+    private static Path fuelFile() throws Exception {
+        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+        return Path.of(classloader.getResource(FUEL_PATH).toURI());
+    }
+
+    private static FrameIndex loadIndex(Path audioFile) throws Exception {
+        long indexStartedAt = System.nanoTime();
+        FrameIndex index = FrameIndex.load(audioFile, INDEX_CACHE_DIRECTORY);
+        System.out.printf("[%s] %s frames, %s ms, indexed in %s ms%n", FrameIndex.class.getSimpleName(),
+                index.frameCount(), index.durationMillis(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - indexStartedAt));
+        return index;
+    }
+
+    /**
+     * Decodes the sections of the menu into the cache in the background, so even their first replay is instant.
+     */
+    private static void preDecodeSections(Path audioFile, FrameIndex index, PcmCache cache) {
+        Thread.ofPlatform().daemon().name("FuelPreDecoder").start(() -> {
+            long startedAt = System.nanoTime();
+            try {
+                for (int[] section : SECTIONS) {
+                    FrameIndex.Seek seek = index.seek(section[0], section[1]);
+                    if (!cache.contains(seek)) {
+                        cache.put(seek, SectionDecoder.decode(audioFile, seek));
+                    }
+                }
+            } catch (Exception e) {
+                System.out.printf("[%s] Pre-decoding stopped: %s%n", FuelPlayerDemo.class.getSimpleName(), e);
+            }
+            System.out.printf("Sections pre-decoded in %s ms: %s%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), cache.summary());
+        });
+    }
 
     // 1. add IO
     // 2. add processing thread
@@ -297,7 +534,10 @@ public class FuelPlayerDemo {
     // 4. add player - maybe some library?
     public static void main(String[] args) throws Exception {
         Scanner scanner = new Scanner(System.in);
-        FuelPlayer fuelPlayer = new FuelPlayerJLayer();
+        FuelPlayer fuelPlayer = switch (PLAYER_TYPE) {
+            case JLAYER -> new FuelPlayerJLayer();
+            case MIXER -> new FuelPlayerMixed();
+        };
 
         if (isPreviewEnabled) {
             fuelPlayer.start();
@@ -342,7 +582,7 @@ public class FuelPlayerDemo {
                     showSectionsSelection(scanner, fuelPlayer);
                     break;
                 case -1:
-                    fuelPlayer.stop();
+                    fuelPlayer.close();
                     System.exit(0);
                     break;
                 default:
@@ -363,23 +603,8 @@ public class FuelPlayerDemo {
         while (true) {
             int choice = scanner.nextInt();
             switch (choice) {
-                case 1:
-                    fuelPlayer.start(0, 4800);
-                    break;
-                case 2:
-                    fuelPlayer.start(14000, 18000);
-                    break;
-                case 3:
-                    fuelPlayer.start(41000, 44000);
-                    break;
-                case 4:
-                    fuelPlayer.start(53000, 74000);
-                    break;
-                case 5:
-                    fuelPlayer.start(128000, 148000);
-                    break;
-                case 6:
-                    fuelPlayer.start(153000, 215000);
+                case 1, 2, 3, 4, 5, 6:
+                    fuelPlayer.start(SECTIONS[choice - 1][0], SECTIONS[choice - 1][1]);
                     break;
                 case -1:
                     return;
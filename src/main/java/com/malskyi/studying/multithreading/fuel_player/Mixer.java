@@ -0,0 +1,340 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.Obuffer;
+import javazoom.jl.player.AudioDevice;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Plays any number of sections of one file at once through a single {@link AudioDevice}.
+ * <p>
+ * Each {@link Stream} is decoded on its own thread from {@code decoderThreads} into its own {@link PcmRing}, or
+ * read straight from a cached {@link PcmClip}. One mixing thread pulls a block of samples from every stream without
+ * waiting, sums them with the stream's gain into an {@code int} accumulator, clamps the sum to 16 bits and writes
+ * it to the device, whose blocking write paces the loop. A stream that has nothing decoded yet only adds silence
+ * to that block, so it cannot stall the others. Nothing is allocated per block, and while no stream plays the
+ * mixing thread sleeps.
+ */
+final class Mixer implements AutoCloseable {
+    /**
+     * Samples per channel mixed and written at once; one Layer III frame.
+     */
+    static final int BLOCK_SAMPLES = 1152;
+
+    private final Path file;
+    private final int sampleRate;
+    private final int channels;
+    private final int maxStreams;
+    private final int readAheadFrames;
+    private final AudioDevice audio;
+    private final ExecutorService decoders;
+    private final List<Stream> streams = new CopyOnWriteArrayList<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final int[] mix;
+    private final short[] out;
+    private final Thread mixing;
+    private final LongAdder blocks = new LongAdder();
+    private final LongAdder mixNanos = new LongAdder();
+    private final LongAdder clippedSamples = new LongAdder();
+    private volatile boolean closed = false;
+
+    /**
+     * @param maxStreams      streams playing at once, beyond which {@code play} is refused
+     * @param readAheadFrames frames each decoded stream may run ahead of the mix
+     */
+    Mixer(Path file, int sampleRate, int channels, int maxStreams, int readAheadFrames, ThreadFactory decoderThreads)
+            throws JavaLayerException {
+        this.file = file;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.maxStreams = maxStreams;
+        this.readAheadFrames = readAheadFrames;
+        this.audio = new PcmAudioDevice(sampleRate, channels);
+        this.audio.open(new Decoder());
+        this.decoders = Executors.newThreadPerTaskExecutor(decoderThreads);
+        this.mix = new int[BLOCK_SAMPLES * channels];
+        this.out = new short[BLOCK_SAMPLES * channels];
+        this.mixing = Thread.ofPlatform().name("FuelMixer").daemon().unstarted(this::mixLoop);
+        this.mixing.setPriority(Thread.MAX_PRIORITY);
+        this.mixing.start();
+    }
+
+    /**
+     * Decodes a section into the mix and, if it was played to its end and {@code cache} can hold it, keeps its
+     * samples there.
+     */
+    Stream play(FrameIndex.Seek seek, PcmCache cache) {
+        final Stream stream = new Stream(new PcmRing(readAheadFrames, Obuffer.OBUFFERSIZE));
+        add(stream);
+        decoders.execute(() -> decode(stream, seek, cache));
+        return stream;
+    }
+
+    /**
+     * Mixes in a clip decoded before; no decoder thread is involved.
+     */
+    Stream play(PcmClip clip) {
+        if (clip.sampleRate() != sampleRate || clip.channels() != channels) {
+            throw new IllegalArgumentException("Clip is %s Hz, %s channels; the mixer plays %s Hz, %s channels"
+                    .formatted(clip.sampleRate(), clip.channels(), sampleRate, channels));
+        }
+        final Stream stream = new Stream(clip);
+        add(stream);
+        return stream;
+    }
+
+    /**
+     * Streams not done yet.
+     */
+    List<Stream> streams() {
+        return List.copyOf(streams);
+    }
+
+    String summary() {
+        final long mixed = blocks.sum();
+        return "%s streams playing, %s blocks mixed in %s us each on average, %s samples clipped".formatted(
+                streams.size(), mixed, mixed == 0 ? 0 : mixNanos.sum() / 1000 / mixed, clippedSamples.sum());
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        streams.forEach(Stream::stop);
+        decoders.shutdown();
+        try {
+            mixing.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        audio.close();
+    }
+
+    private synchronized void add(Stream stream) {
+        if (closed) {
+            throw new IllegalStateException("Mixer is closed");
+        }
+        if (streams.size() >= maxStreams) {
+            throw new IllegalStateException("Already mixing " + maxStreams + " streams");
+        }
+        streams.add(stream);
+        notifyAll();
+    }
+
+    /**
+     * Decoder stage of one stream, see {@link SectionDecoder#decode}.
+     */
+    private void decode(Stream stream, FrameIndex.Seek seek, PcmCache cache) {
+        final PcmClip.Builder recording = cache != null && cache.accepts(SectionDecoder.capacity(seek) * (long) Short.BYTES)
+                ? new PcmClip.Builder(SectionDecoder.capacity(seek)) : null;
+        final SectionDecoder.FrameSink sink = recording == null ? stream.ring::put : (samples, offset, length) ->
+                recording.append(samples, offset, length) && stream.ring.put(samples, offset, length);
+        try {
+            final Decoder decoder = SectionDecoder.decode(file, seek, sink);
+            if (recording != null && !stream.stopped) {
+                cache.put(seek, recording.build(decoder.getOutputFrequency(), decoder.getOutputChannels()));
+            }
+        } catch (IOException | JavaLayerException | RuntimeException e) {
+            if (!stream.stopped) {
+                System.out.printf("[%s] Stream %s failed: %s%n", getClass().getSimpleName(), stream.id, e);
+            }
+        } finally {
+            stream.ring.finish();
+        }
+    }
+
+    private void mixLoop() {
+        try {
+            while (awaitStreams()) {
+                final long startedAt = System.nanoTime();
+                Arrays.fill(mix, 0);
+                boolean anyDone = false;
+                // only this thread removes streams, others only append, so indexing needs no iterator
+                for (int i = 0; i < streams.size(); i++) {
+                    final Stream stream = streams.get(i);
+                    stream.mixInto(mix);
+                    anyDone |= stream.isDone();
+                }
+                int clipped = 0;
+                for (int i = 0; i < mix.length; i++) {
+                    final int sample = mix[i];
+                    if (sample > Short.MAX_VALUE || sample < Short.MIN_VALUE) {
+                        clipped++;
+                    }
+                    out[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+                }
+                if (anyDone) {
+                    streams.removeIf(Stream::isDone);
+                }
+                mixNanos.add(System.nanoTime() - startedAt);
+                clippedSamples.add(clipped);
+                blocks.increment();
+                audio.write(out, 0, out.length);
+            }
+            audio.flush();
+        } catch (JavaLayerException | RuntimeException e) {
+            System.out.printf("[%s] Mixing stopped: %s%n", getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Sleeps while nothing is playing.
+     *
+     * @return false once the mixer is closed
+     */
+    private synchronized boolean awaitStreams() {
+        try {
+            while (!closed && streams.isEmpty()) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !closed;
+    }
+
+    /**
+     * Handle of one stream in the mix. Pausing keeps its position, and its decoder keeps filling the read-ahead.
+     */
+    final class Stream {
+        private final int id = ids.incrementAndGet();
+        private final PcmRing ring;
+        private final short[] samples;
+        private int position;
+        private int limit;
+        private boolean started = false;
+        private final PcmRing.PcmSink refill = this::refill;
+        private final LongAdder underruns = new LongAdder();
+        private volatile float gain = 1f;
+        private volatile boolean paused = false;
+        private volatile boolean stopped = false;
+        private volatile boolean done = false;
+
+        private Stream(PcmRing ring) {
+            this.ring = ring;
+            this.samples = new short[Obuffer.OBUFFERSIZE];
+        }
+
+        private Stream(PcmClip clip) {
+            this.ring = null;
+            this.samples = clip.samples();
+            this.limit = samples.length;
+        }
+
+        int id() {
+            return id;
+        }
+
+        void pause() {
+            paused = true;
+        }
+
+        void resume() {
+            paused = false;
+        }
+
+        /**
+         * Takes the stream out of the mix for good and stops its decoder.
+         */
+        void stop() {
+            stopped = true;
+            if (ring != null) {
+                ring.close();
+            }
+        }
+
+        /**
+         * @param gain factor the samples are scaled by before summing, 1 for unchanged
+         */
+        void setGain(float gain) {
+            if (gain < 0 || Float.isNaN(gain)) {
+                throw new IllegalArgumentException("Gain must not be negative: " + gain);
+            }
+            this.gain = gain;
+        }
+
+        boolean isPaused() {
+            return paused;
+        }
+
+        /**
+         * Whether the stream was played to its end or stopped.
+         */
+        boolean isDone() {
+            return done;
+        }
+
+        /**
+         * Blocks the mix needed samples the decoder had not produced yet, after the first one, i.e. audible gaps.
+         */
+        long underruns() {
+            return underruns.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Stream " + id + (done ? " done" : paused ? " paused" : " playing") + ", gain " + gain + ", underruns " + underruns();
+        }
+
+        /**
+         * Adds up to one block of this stream's samples to {@code mix}; mixing thread only.
+         */
+        private void mixInto(int[] mix) throws JavaLayerException {
+            if (stopped) {
+                done = true;
+                return;
+            }
+            if (paused) {
+                return;
+            }
+            final float gain = this.gain;
+            int mixed = 0;
+            while (mixed < mix.length) {
+                if (position == limit && !nextFrame()) {
+                    break;
+                }
+                final int count = Math.min(mix.length - mixed, limit - position);
+                for (int i = 0; i < count; i++) {
+                    mix[mixed + i] += (int) (samples[position + i] * gain);
+                }
+                mixed += count;
+                position += count;
+            }
+            if (mixed < mix.length) {
+                if (ring == null || ring.isDrained()) {
+                    done = true;
+                } else if (started) {
+                    underruns.increment();
+                }
+            }
+            started |= mixed > 0;
+        }
+
+        private boolean nextFrame() throws JavaLayerException {
+            return ring != null && ring.poll(refill);
+        }
+
+        private void refill(short[] frame, int offset, int length) {
+            System.arraycopy(frame, offset, samples, 0, length);
+            position = 0;
+            limit = length;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import javazoom.jl.player.JavaSoundAudioDevice;
+
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Java Sound device for 16-bit PCM of a known format, for samples that do not come from the device's own decoder,
+ * like cached clips or the mixer's output: JLayer otherwise takes the format from a decoder that decoded a frame.
+ */
+final class PcmAudioDevice extends JavaSoundAudioDevice {
+    PcmAudioDevice(int sampleRate, int channels) {
+        setAudioFormat(new AudioFormat(sampleRate, 16, channels, true, false));
+    }
+}
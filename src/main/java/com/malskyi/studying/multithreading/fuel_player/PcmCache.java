@@ -0,0 +1,67 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decoded sections by where they are in the track, evicting the least recently played ones once their samples take
+ * more than {@code maxBytes}. Clips live on the heap as the {@code short[]} an audio device takes, so a cached replay
+ * is written straight from the cache without decoding or copying.
+ */
+final class PcmCache {
+    private final long maxBytes;
+    private final Map<FrameIndex.Seek, PcmClip> clips = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    PcmCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the clip, or null if it has to be decoded
+     */
+    synchronized PcmClip get(FrameIndex.Seek seek) {
+        final PcmClip clip = clips.get(seek);
+        if (clip == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return clip;
+    }
+
+    synchronized boolean contains(FrameIndex.Seek seek) {
+        return clips.containsKey(seek);
+    }
+
+    /**
+     * Whether a clip of that size could be kept at all, so that decoding it into memory is worth it.
+     */
+    boolean accepts(long clipBytes) {
+        return clipBytes <= maxBytes;
+    }
+
+    synchronized void put(FrameIndex.Seek seek, PcmClip clip) {
+        if (!accepts(clip.bytes())) {
+            return;
+        }
+        final PcmClip replaced = clips.put(seek, clip);
+        bytes += clip.bytes() - (replaced == null ? 0 : replaced.bytes());
+        final Iterator<PcmClip> eldest = clips.values().iterator();
+        while (bytes > maxBytes) {
+            final PcmClip evicted = eldest.next();
+            eldest.remove();
+            bytes -= evicted.bytes();
+            evictions++;
+        }
+    }
+
+    synchronized String summary() {
+        return String.format("[%s] %s clips, %s of %s KB, %s hits, %s misses, %s evictions",
+                getClass().getSimpleName(), clips.size(), bytes >> 10, maxBytes >> 10, hits, misses, evictions);
+    }
+}
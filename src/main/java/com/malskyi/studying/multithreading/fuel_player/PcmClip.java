@@ -0,0 +1,37 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import java.util.Arrays;
+
+/**
+ * A decoded section: interleaved 16-bit samples, ready to be written to an audio device as they are.
+ */
+record PcmClip(short[] samples, int sampleRate, int channels) {
+    long bytes() {
+        return (long) samples.length * Short.BYTES;
+    }
+
+    /**
+     * Collects the frames of a section as they are decoded, into an array sized for the whole section up front.
+     */
+    static final class Builder {
+        private short[] samples;
+        private int length = 0;
+
+        Builder(int capacity) {
+            this.samples = new short[capacity];
+        }
+
+        boolean append(short[] frame, int offset, int count) {
+            if (length + count > samples.length) {
+                samples = Arrays.copyOf(samples, Math.max(length + count, samples.length * 2));
+            }
+            System.arraycopy(frame, offset, samples, length, count);
+            length += count;
+            return true;
+        }
+
+        PcmClip build(int sampleRate, int channels) {
+            return new PcmClip(length == samples.length ? samples : Arrays.copyOf(samples, length), sampleRate, channels);
+        }
+    }
+}
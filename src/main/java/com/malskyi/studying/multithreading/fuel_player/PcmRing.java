@@ -0,0 +1,157 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import com.malskyi.studying.multithreading.producer_consumer.WaitStrategy;
+import javazoom.jl.decoder.JavaLayerException;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-producer/single-consumer ring of decoded PCM frames between the decoder and the playback thread.
+ * <p>
+ * Slots are preallocated and samples are copied in, so the decoder can reuse its output buffer and neither side
+ * allocates per frame. Each side only writes its own cursor, so a frame is passed without a lock while neither side
+ * waits. A side sleeps on a {@link WaitStrategy#blocking()} strategy while the ring is full or empty, and only then
+ * does the other side take the strategy's lock, to wake it.
+ */
+final class PcmRing {
+    /**
+     * Where {@link #take} hands a frame to, e.g. {@code AudioDevice::write}.
+     */
+    interface PcmSink {
+        void write(short[] samples, int offset, int length) throws JavaLayerException;
+    }
+
+    private final short[][] samples;
+    private final int[] lengths;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong read = new AtomicLong();
+    private final WaitStrategy waitStrategy = WaitStrategy.blocking();
+    private final LongAdder underruns = new LongAdder();
+    private volatile boolean finished = false;
+    private volatile boolean closed = false;
+
+    PcmRing(int capacity, int frameSize) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Read-ahead must be at least one frame: " + capacity);
+        }
+        this.samples = new short[capacity][frameSize];
+        this.lengths = new int[capacity];
+    }
+
+    int capacity() {
+        return samples.length;
+    }
+
+    /**
+     * Frames decoded and not played yet.
+     */
+    int size() {
+        return (int) (written.get() - read.get());
+    }
+
+    /**
+     * Times the playback thread found the ring empty after the first frame and before the decoder was done, i.e.
+     * audible gaps.
+     */
+    long underruns() {
+        return underruns.sum();
+    }
+
+    /**
+     * Copies {@code length} samples of a frame in, waiting while the ring is full.
+     *
+     * @return false if the ring was closed
+     */
+    boolean put(short[] frame, int offset, int length) {
+        final long position = written.get();
+        for (int attempt = 0; position - read.get() >= samples.length; attempt++) {
+            if (closed) {
+                return false;
+            }
+            waitStrategy.idle(attempt);
+        }
+        if (closed) {
+            return false;
+        }
+        final int slot = (int) (position % samples.length);
+        System.arraycopy(frame, offset, samples[slot], 0, length);
+        lengths[slot] = length;
+        written.set(position + 1);
+        waitStrategy.signal();
+        return true;
+    }
+
+    /**
+     * Hands the oldest frame to {@code sink}, waiting while the ring is empty.
+     *
+     * @return false if the producer {@link #finish}ed and everything was taken, or the ring was closed
+     */
+    boolean take(PcmSink sink) throws JavaLayerException {
+        final long position = read.get();
+        for (int attempt = 0; written.get() == position; attempt++) {
+            if (closed || finished && written.get() == position) {
+                return false;
+            }
+            if (attempt == 0 && position > 0) {
+                underruns.increment();
+            }
+            waitStrategy.idle(attempt);
+        }
+        if (closed) {
+            return false;
+        }
+        final int slot = (int) (position % samples.length);
+        sink.write(samples[slot], 0, lengths[slot]);
+        read.set(position + 1);
+        waitStrategy.signal();
+        return true;
+    }
+
+    /**
+     * Hands the oldest frame to {@code sink} if there is one, without waiting; for a reader that must not block,
+     * like a mixer pulling from many rings.
+     *
+     * @return false if the ring is empty or closed
+     */
+    boolean poll(PcmSink sink) throws JavaLayerException {
+        final long position = read.get();
+        if (closed || written.get() == position) {
+            return false;
+        }
+        final int slot = (int) (position % samples.length);
+        sink.write(samples[slot], 0, lengths[slot]);
+        read.set(position + 1);
+        waitStrategy.signal();
+        return true;
+    }
+
+    /**
+     * Whether the producer {@link #finish}ed and every frame was taken, or the ring was closed.
+     */
+    boolean isDrained() {
+        return closed || finished && written.get() == read.get();
+    }
+
+    /**
+     * No more frames will be put until {@link #reset}.
+     */
+    void finish() {
+        finished = true;
+        waitStrategy.signal();
+    }
+
+    /**
+     * Empties the ring for the next run; only once both sides are done with it.
+     */
+    void reset() {
+        read.set(0);
+        written.set(0);
+        finished = false;
+    }
+
+    void close() {
+        closed = true;
+        waitStrategy.signal();
+    }
+}
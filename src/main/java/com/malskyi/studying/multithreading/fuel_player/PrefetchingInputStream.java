@@ -0,0 +1,146 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads its source on a thread of its own, up to {@code chunksAhead} chunks ahead of the reader, so a slow disk
+ * stalls the read-ahead rather than the decoder.
+ * <p>
+ * The chunk buffers are allocated up front and recycled: the reader thread fills a free one and queues it, and the
+ * decoder hands it back once it has read it. Beside the queued ones, one is being filled and one being read.
+ */
+final class PrefetchingInputStream extends InputStream {
+    private static final Chunk END = new Chunk(0);
+    private static final Chunk EMPTY = new Chunk(0);
+    private static final long POLL_MILLIS = 10L;
+
+    private final InputStream source;
+    private final BlockingQueue<Chunk> chunks;
+    private final BlockingQueue<Chunk> free;
+    private final Thread reader;
+    private volatile boolean closed = false;
+    private volatile IOException failure;
+
+    private Chunk current = EMPTY;
+    private int position = 0;
+
+    PrefetchingInputStream(InputStream source, int chunkSize, int chunksAhead) {
+        this.source = source;
+        this.chunks = new ArrayBlockingQueue<>(chunksAhead);
+        this.free = new ArrayBlockingQueue<>(chunksAhead + 2);
+        for (int i = 0; i < chunksAhead + 2; i++) {
+            free.add(new Chunk(chunkSize));
+        }
+        this.reader = new Thread(this::prefetch, "FuelReader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        final int count = Math.min(length, current.length - position);
+        System.arraycopy(current.data, position, target, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        reader.interrupt();
+    }
+
+    /**
+     * @return false at the end of the source or once closed
+     */
+    private boolean fill() throws IOException {
+        while (position == current.length) {
+            if (current == END) {
+                return false;
+            }
+            if (current != EMPTY) {
+                free.offer(current);
+            }
+            final Chunk next = next();
+            if (next == END && failure != null) {
+                throw failure;
+            }
+            current = next;
+            position = 0;
+        }
+        return true;
+    }
+
+    private Chunk next() throws IOException {
+        try {
+            while (!closed) {
+                final Chunk chunk = chunks.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (chunk != null) {
+                    return chunk;
+                }
+            }
+            return END;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for data", e);
+        }
+    }
+
+    private void prefetch() {
+        try (source) {
+            while (true) {
+                final Chunk chunk = free.take();
+                chunk.length = source.readNBytes(chunk.data, 0, chunk.data.length);
+                if (chunk.length == 0) {
+                    chunks.put(END);
+                    return;
+                }
+                chunks.put(chunk);
+            }
+        } catch (IOException e) {
+            failure = e;
+            try {
+                chunks.put(END);
+            } catch (InterruptedException interrupted) {
+                // closed
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    /**
+     * A chunk buffer and how much of it the last read filled; handed between the threads through the queues only.
+     */
+    private static final class Chunk {
+        private final byte[] data;
+        private int length;
+
+        private Chunk(int size) {
+            this.data = new byte[size];
+        }
+    }
+}
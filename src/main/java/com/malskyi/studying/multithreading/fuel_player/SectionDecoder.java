@@ -0,0 +1,102 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.JavaLayerException;
+import javazoom.jl.decoder.Obuffer;
+import javazoom.jl.decoder.SampleBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decodes a run of frames to the sample, for the player's decoder thread and for decoding sections into memory.
+ */
+final class SectionDecoder {
+    /**
+     * Takes the decoded samples of a frame; they are only valid during the call.
+     */
+    interface FrameSink {
+        /**
+         * @return false to stop decoding
+         */
+        boolean write(short[] samples, int offset, int length);
+    }
+
+    private SectionDecoder() {
+    }
+
+    /**
+     * Skips {@code skipFrames} frames, decodes and drops {@code prerollFrames}, then decodes {@code frames} to
+     * {@code sink}, trimming the first and last one to the requested samples.
+     *
+     * @param endSample samples per channel to keep from the last frame, -1 for all
+     * @return false if the stream ended first
+     */
+    static boolean decode(Bitstream bitstream, Decoder decoder, int skipFrames, int prerollFrames, int frames,
+                          int startSample, int endSample, FrameSink sink) throws JavaLayerException {
+        final int decodeFrom = skipFrames + prerollFrames;
+        final int end = (int) Math.min(Integer.MAX_VALUE, (long) decodeFrom + frames);
+        for (int frameNumber = 0; frameNumber < end; frameNumber++) {
+            final Header header = bitstream.readFrame();
+            if (header == null) {
+                return false;
+            }
+            if (frameNumber < skipFrames) {
+                bitstream.closeFrame();
+                continue;
+            }
+            // sample buffer set when decoder constructed
+            final SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+            bitstream.closeFrame();
+            if (frameNumber < decodeFrom) {
+                continue;
+            }
+            final int channels = output.getChannelCount();
+            final int from = frameNumber == decodeFrom ? startSample * channels : 0;
+            final int to = frameNumber == end - 1 && endSample >= 0
+                    ? Math.min(endSample * channels, output.getBufferLength())
+                    : output.getBufferLength();
+            if (to > from && !sink.write(output.getBuffer(), from, to - from)) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a section of {@code file} into memory, on the calling thread.
+     */
+    static PcmClip decode(Path file, FrameIndex.Seek seek) throws IOException, JavaLayerException {
+        final PcmClip.Builder clip = new PcmClip.Builder(capacity(seek));
+        final Decoder decoder = decode(file, seek, clip::append);
+        return clip.build(decoder.getOutputFrequency(), decoder.getOutputChannels());
+    }
+
+    /**
+     * Decodes a section of {@code file} to {@code sink}, on the calling thread.
+     *
+     * @return the decoder, which knows the output format once a frame was decoded
+     */
+    static Decoder decode(Path file, FrameIndex.Seek seek, FrameSink sink) throws IOException, JavaLayerException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(seek.offset());
+            final Bitstream bitstream = new Bitstream(new BufferedInputStream(Channels.newInputStream(channel)));
+            final Decoder decoder = new Decoder();
+            decode(bitstream, decoder, 0, seek.prerollFrames(), seek.frames(), seek.startSample(), seek.endSample(), sink);
+            return decoder;
+        }
+    }
+
+    /**
+     * The most samples a section can decode to, a full stereo frame for each frame.
+     */
+    static int capacity(FrameIndex.Seek seek) {
+        return (int) Math.min(Integer.MAX_VALUE - 8, (long) seek.frames() * Obuffer.OBUFFERSIZE);
+    }
+}
@@ -2,99 +2,261 @@ package com.malskyi.studying.multithreading.functional;
 
 import com.malskyi.studying.multithreading.Container;
 import com.malskyi.studying.multithreading.ContainerStatus;
+import com.malskyi.studying.multithreading.RunControl;
+import com.malskyi.studying.multithreading.ShutdownReport;
+import com.malskyi.studying.multithreading.StatusCounters;
+import com.malskyi.studying.multithreading.logging.Log;
+import com.malskyi.studying.multithreading.metrics.StageMetrics;
+import com.malskyi.studying.multithreading.resilience.DeadLetter;
+import com.malskyi.studying.multithreading.resilience.FaultInjector;
+import com.malskyi.studying.multithreading.resilience.ResilientStage;
+import com.malskyi.studying.multithreading.resilience.StagePolicy;
 import lombok.Data;
 
 import java.time.Instant;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 /**
- * Results:
+ * PARALLEL_STREAM results with Thread.sleep (every sleep holds one of the 3 pool threads):
  * 	Initialized: 18 containers
  * 	Built: 18 containers
  * 	Deployed: 18 containers
+ * PARALLEL_STREAM results with managed blocking (the pool adds spare threads without any bound):
+ * 	Initialized: 96 containers
+ * 	Built: 96 containers
+ * 	Deployed: 96 containers
+ * COMPLETABLE_FUTURE results (12 in flight):
+ * 	Initialized: 73 containers
+ * 	Built: 73 containers
+ * 	Deployed: 73 containers
  */
 public class FunctionalDemo {
+    /**
+     * PARALLEL_STREAM splits an infinite stream, which hands work to the pool poorly and holds a pool thread for the
+     * whole life of a container. COMPLETABLE_FUTURE chains the stages of every container asynchronously, with at most
+     * MAX_IN_FLIGHT containers in the pool at a time.
+     */
+    enum Engine {
+        PARALLEL_STREAM, COMPLETABLE_FUTURE
+    }
+
+    private static final Engine ENGINE = Engine.COMPLETABLE_FUTURE;
     private static final int THREADS_COUNT = 3;
+    private static final int MAX_IN_FLIGHT = 12;
+    private static final long INIT_DELAY = 100L;
+    private static final long BUILD_DELAY = 300L;
+    private static final long DEPLOY_DELAY = 600L;
+    private static final long EXECUTION_TIME_SECONDS = 6L;
+    private static final long DRAIN_TIMEOUT = 1500L;
+    private static final long ABORT_TIMEOUT = 500L;
     private static final AtomicInteger COUNTER = new AtomicInteger(1);
 
+    // Timeout at twice the stage delay, following the live one, as in AssemblyDemo
+    private static final StagePolicy BUILD_POLICY = new StagePolicy(2 * BUILD_DELAY, 3, 50L, 400L, 20, 0.5, 1000L);
+    private static final StagePolicy DEPLOY_POLICY = new StagePolicy(2 * DEPLOY_DELAY, 3, 50L, 400L, 20, 0.5, 1000L);
+
+    // Everything below belongs to one run, so runs next to each other do not share settings, breakers or dead letters
+    private final StageMetrics initMetrics = StageMetrics.of("FunctionalDemo", "init");
+    private final StageMetrics buildMetrics = StageMetrics.of("FunctionalDemo", "build");
+    private final StageMetrics deployMetrics = StageMetrics.of("FunctionalDemo", "deploy");
+
+    // a failed build or deploy used to fail the whole stream, now the container goes to deadLetters
+    private final Queue<DeadLetter> deadLetters = new ConcurrentLinkedQueue<>();
+    private final ResilientStage buildStage;
+    private final ResilientStage deployStage;
+
+    private final RunControl.Setting initDelay;
+    private final RunControl.Setting buildDelay;
+    private final RunControl.Setting deployDelay;
+
+    private FunctionalDemo(RunControl control) {
+        this.initDelay = control.live("init.delay", INIT_DELAY);
+        this.buildDelay = control.live("build.delay", BUILD_DELAY);
+        this.deployDelay = control.live("deploy.delay", DEPLOY_DELAY);
+        this.buildStage = new ResilientStage("build", BUILD_POLICY, FaultInjector.NONE, deadLetters, () -> 2 * buildDelay.get());
+        this.deployStage = new ResilientStage("deploy", DEPLOY_POLICY, FaultInjector.NONE, deadLetters, () -> 2 * deployDelay.get());
+    }
+
     public static void main(String[] args) throws InterruptedException {
-        final Queue<Container> initializedContainers = new ConcurrentLinkedQueue<>();
-        final Queue<Container> builtContainers = new ConcurrentLinkedQueue<>();
-        final Queue<Container> deployedContainers = new ConcurrentLinkedQueue<>();
+        run();
+        System.exit(0);
+    }
+
+    public static void run() throws InterruptedException {
+        run(RunControl.standalone());
+    }
+
+    public static void run(RunControl control) throws InterruptedException {
+        final int threadsCount = (int) control.fixed("threads", THREADS_COUNT);
+        final long executionSeconds = control.fixed("execution.seconds", EXECUTION_TIME_SECONDS);
+        new FunctionalDemo(control).execute(control, threadsCount, executionSeconds);
+    }
+
+    private void execute(RunControl control, int threadsCount, long executionSeconds) throws InterruptedException {
+        final Queue<Container> createdContainers = new ConcurrentLinkedQueue<>();
+        final StatusCounters counters = new StatusCounters();
+        control.track(counters);
+        control.track("dead-lettered", deadLetters::size);
 
-        System.out.println("Starting parallel streams...");
+        System.out.println("Starting " + ENGINE + " engine...");
 
-        ForkJoinPool forkJoinPool = new ForkJoinPool(THREADS_COUNT);
-        forkJoinPool.submit(() -> {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(threadsCount);
+        if (ENGINE == Engine.COMPLETABLE_FUTURE) {
+            runFutures(forkJoinPool, createdContainers, counters, control, executionSeconds, (int) control.fixed("max-in-flight", MAX_IN_FLIGHT));
+        } else {
+            runParallelStream(forkJoinPool, createdContainers, counters, control, executionSeconds);
+        }
+        forkJoinPool.shutdown();
+
+        Log.flush();
+        counters.print();
+        System.out.println("\t" + buildStage.summary());
+        System.out.println("\t" + deployStage.summary());
+        ShutdownReport.print(createdContainers);
+        ShutdownReport.printDeadLetters(deadLetters);
+    }
+
+    private void runParallelStream(ForkJoinPool forkJoinPool, Queue<Container> createdContainers,
+                                   StatusCounters counters, RunControl control, long executionSeconds) throws InterruptedException {
+        final ForkJoinTask<?> task = forkJoinPool.submit(() -> {
             Instant startTime = Instant.now();
-            Instant endTime = startTime.plusSeconds(6);
+            Instant endTime = startTime.plusSeconds(executionSeconds);
             Stream.generate(() -> null)
-                    .takeWhile(obj -> Instant.now().isBefore(endTime))
+                    .takeWhile(obj -> Instant.now().isBefore(endTime) && !control.isStopRequested())
                     .parallel()
-                    .map(container -> init(100L, initializedContainers))
-                    .map(container -> build(container, 300L, builtContainers))
-                    .forEach(container -> deploy(container, 600L, deployedContainers));
-        }).join();
+                    .map(container -> init(initDelay.get(), createdContainers, counters))
+                    .map(container -> build(container, buildDelay.get(), counters))
+                    .forEach(container -> deploy(container, deployDelay.get(), counters));
+        });
 
-        Thread.sleep(300L);
-        System.out.println("Results:");
-        System.out.println("\tInitialized: " + initializedContainers.size() + " containers");
-        System.out.println("\tBuilt: " + builtContainers.size() + " containers");
-        System.out.println("\tDeployed: " + deployedContainers.size() + " containers");
+        // takeWhile stops the intake, the stream then completes the containers already in flight
+        try {
+            task.get(TimeUnit.SECONDS.toMillis(executionSeconds) + DRAIN_TIMEOUT, TimeUnit.MILLISECONDS);
+            System.out.println("All streams finished in-flight work!");
+        } catch (TimeoutException e) {
+            System.out.println("Drain deadline exceeded, interrupting remaining workers...");
+            forkJoinPool.shutdownNow();
+            forkJoinPool.awaitTermination(ABORT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            System.out.println("Stream failed: " + e.getCause());
+        }
+    }
 
-        System.exit(0);
+    private void runFutures(ForkJoinPool forkJoinPool, Queue<Container> createdContainers, StatusCounters counters,
+                            RunControl control, long executionSeconds, int maxInFlight) throws InterruptedException {
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final Instant endTime = Instant.now().plusSeconds(executionSeconds);
+        while (Instant.now().isBefore(endTime) && !control.isStopRequested()) {
+            if (!inFlight.tryAcquire(ABORT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+            CompletableFuture.supplyAsync(() -> init(initDelay.get(), createdContainers, counters), forkJoinPool)
+                    .thenApplyAsync(container -> build(container, buildDelay.get(), counters), forkJoinPool)
+                    .thenAcceptAsync(container -> deploy(container, deployDelay.get(), counters), forkJoinPool)
+                    .whenComplete((ignored, e) -> inFlight.release());
+        }
+
+        // every container in flight holds a permit, so getting all of them back means the pool is drained
+        if (inFlight.tryAcquire(maxInFlight, DRAIN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+            System.out.println("All futures finished in-flight work!");
+        } else {
+            System.out.println("Drain deadline exceeded, interrupting remaining workers...");
+            forkJoinPool.shutdownNow();
+            forkJoinPool.awaitTermination(ABORT_TIMEOUT, TimeUnit.MILLISECONDS);
+        }
     }
 
+    /**
+     * Sleeps through {@link ForkJoinPool#managedBlock}, so the pool starts a spare thread to keep its parallelism
+     * while a worker is blocked, instead of running out of threads.
+     */
+    private static void pause(long delay) throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                Thread.sleep(delay);
+                return true;
+            }
 
-    private static Container init(long delay, final Queue<Container> initializedContainers) {
-        System.out.printf("[%s] Initializing container...%n", Thread.currentThread().getName());
+            @Override
+            public boolean isReleasable() {
+                return false;
+            }
+        });
+    }
+
+
+    private Container init(long delay, final Queue<Container> createdContainers, final StatusCounters counters) {
+        Log.debug("[%s] Initializing container...%n", Thread.currentThread().getName());
         final Container container = new Container(COUNTER.getAndIncrement());
+        createdContainers.add(container);
+        final long startedAt = System.nanoTime();
         try {
-            Thread.sleep(delay);
+            pause(delay);
         } catch (InterruptedException e) {
-            System.out.printf("[%s] InterruptedException during container initialization%n", Thread.currentThread().getName());
-            System.out.printf("[%s] Stopping initialization process!%n", Thread.currentThread().getName());
+            Log.info("[%s] InterruptedException during container initialization%n", Thread.currentThread().getName());
+            Log.info("[%s] Stopping initialization process!%n", Thread.currentThread().getName());
             throw new RuntimeException(e);
         }
-        container.setInitializedBy(String.format("[%s] %s ", Thread.currentThread().getName(), Thread.currentThread().getName()));
+        container.setInitializedBy("[" + Thread.currentThread().getName() + "] " + Thread.currentThread().getName() + " ");
         container.setContainerStatus(ContainerStatus.INITIALIZED);
-        initializedContainers.add(container);
+        initMetrics.recordService(System.nanoTime() - startedAt);
+        counters.record(ContainerStatus.INITIALIZED, container);
         return container;
     }
 
-    private static Container build(final Container container, long delay, final Queue<Container> builtContainers) {
-        System.out.printf("[%s] Building %s...%n", Thread.currentThread().getName(), container.getName());
+    /**
+     * @return the built container, null if the build stage gave up on it
+     */
+    private Container build(final Container container, long delay, final StatusCounters counters) {
+        Log.debug("[%s] Building %s...%n", Thread.currentThread().getName(), container.getName());
+        final long startedAt = System.nanoTime();
         try {
-            Thread.sleep(delay);
+            if (!buildStage.execute(container, built -> pause(delay))) {
+                return null;
+            }
         } catch (InterruptedException e) {
-            System.out.printf("[%s] InterruptedException caught during build%n", Thread.currentThread().getName());
-            System.out.printf("[%s] Finishing process without completion%n", Thread.currentThread().getName());
+            Log.info("[%s] InterruptedException caught during build%n", Thread.currentThread().getName());
+            Log.info("[%s] Finishing process without completion%n", Thread.currentThread().getName());
             throw new RuntimeException(e);
         }
         container.setBuildBy(Thread.currentThread().getName());
         container.setContainerStatus(ContainerStatus.BUILT);
-        builtContainers.add(container);
+        buildMetrics.recordService(System.nanoTime() - startedAt);
+        counters.record(ContainerStatus.BUILT, container);
         return container;
     }
 
-    private static void deploy(Container container, long delay, Queue<Container> deployedContainers) {
-        System.out.printf("[%s] Deploying %s...%n", Thread.currentThread().getName(), container.getName());
+    private void deploy(Container container, long delay, StatusCounters counters) {
+        if (container == null) {
+            return;
+        }
+        Log.debug("[%s] Deploying %s...%n", Thread.currentThread().getName(), container.getName());
+        final long startedAt = System.nanoTime();
         try {
-            Thread.sleep(delay);
+            if (!deployStage.execute(container, deployed -> pause(delay))) {
+                return;
+            }
         } catch (InterruptedException e) {
-            System.out.printf("[%s] InterruptedException caught inside deploy worker during deployment finish!%n", Thread.currentThread().getName());
-            System.out.printf("[%s] Currently deployed %s containers%n", Thread.currentThread().getName(), deployedContainers.size());
-            System.out.printf("[%s] Finishing deployment process!%n", Thread.currentThread().getName());
+            Log.info("[%s] InterruptedException caught during deployment, %s stays undeployed!%n", Thread.currentThread().getName(), container.getName());
+            Log.info("[%s] Currently deployed %s containers%n", Thread.currentThread().getName(), counters.count(ContainerStatus.DEPLOYED));
+            Log.info("[%s] Finishing deployment process!%n", Thread.currentThread().getName());
             throw new RuntimeException(e);
-        } finally {
-            container.setDeployedBy(String.format("[%s] %s ", Thread.currentThread().getName(), Thread.currentThread().getName()));
-            container.setContainerStatus(ContainerStatus.DEPLOYED);
-            deployedContainers.add(container);
         }
+        container.setDeployedBy("[" + Thread.currentThread().getName() + "] " + Thread.currentThread().getName() + " ");
+        container.setContainerStatus(ContainerStatus.DEPLOYED);
+        deployMetrics.recordService(System.nanoTime() - startedAt);
+        counters.record(ContainerStatus.DEPLOYED, container);
     }
 }
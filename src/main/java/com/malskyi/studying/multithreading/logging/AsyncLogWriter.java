@@ -0,0 +1,143 @@
+package com.malskyi.studying.multithreading.logging;
+
+import java.io.PrintStream;
+import java.util.Formatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free multi-producer, single-consumer ring of preallocated log events.
+ * Producers claim a slot with a CAS on the claim cursor, copy the format and arguments into it and publish it by
+ * stamping the slot's sequence, the same protocol as {@code RingBuffer}. The writer thread formats published events
+ * in order into one buffer, frees the slot right away and prints the buffer whenever the ring runs empty or the buffer
+ * grows past {@link #PRINT_THRESHOLD}. A full ring never blocks a producer: the event is dropped and counted instead.
+ */
+final class AsyncLogWriter implements Runnable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int PRINT_THRESHOLD = 8192;
+
+    private final PrintStream out;
+    private final Event[] events;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimCursor = new AtomicLong();
+    private final AtomicLong consumedCursor = new AtomicLong();
+    private final AtomicLong printedCursor = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    private final StringBuilder buffer = new StringBuilder(PRINT_THRESHOLD * 2);
+    private final Formatter formatter = new Formatter(buffer);
+
+    private AsyncLogWriter(PrintStream out, int capacity) {
+        this.out = out;
+        this.events = new Event[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new Event();
+        }
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @param capacity a power of two
+     */
+    static AsyncLogWriter start(PrintStream out, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        final AsyncLogWriter writer = new AsyncLogWriter(out, capacity);
+        final Thread thread = new Thread(writer, "AsyncLogWriter");
+        thread.setDaemon(true);
+        thread.start();
+        return writer;
+    }
+
+    void append(String format, int argc, Object arg0, Object arg1, Object arg2) {
+        long sequence;
+        do {
+            sequence = claimCursor.get();
+            if (sequence - consumedCursor.get() >= events.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimCursor.compareAndSet(sequence, sequence + 1));
+        final int index = (int) (sequence & mask);
+        events[index].set(format, argc, arg0, arg1, arg2);
+        published.setRelease(index, sequence + 1);
+    }
+
+    void flush() {
+        final long target = claimCursor.get();
+        while (printedCursor.get() < target) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    @Override
+    public void run() {
+        long next = 0;
+        while (true) {
+            final int index = (int) (next & mask);
+            if (published.getAcquire(index) == next + 1) {
+                events[index].formatTo(formatter);
+                events[index].clear();
+                consumedCursor.setRelease(++next);
+                if (buffer.length() >= PRINT_THRESHOLD) {
+                    print(next);
+                }
+                continue;
+            }
+            final long droppedEvents = dropped.sumThenReset();
+            if (droppedEvents > 0) {
+                formatter.format("[%s] Dropped %s events, ring was full%n", getClass().getSimpleName(), droppedEvents);
+            }
+            if (printedCursor.get() != next || !buffer.isEmpty()) {
+                print(next);
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void print(long upTo) {
+        out.print(buffer);
+        out.flush();
+        buffer.setLength(0);
+        printedCursor.set(upTo);
+    }
+
+    private static final class Event {
+        private String format;
+        private int argc;
+        private Object arg0;
+        private Object arg1;
+        private Object arg2;
+
+        private void set(String format, int argc, Object arg0, Object arg1, Object arg2) {
+            this.format = format;
+            this.argc = argc;
+            this.arg0 = arg0;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+        }
+
+        private void formatTo(Formatter formatter) {
+            switch (argc) {
+                case 0 -> formatter.format(format);
+                case 1 -> formatter.format(format, arg0);
+                case 2 -> formatter.format(format, arg0, arg1);
+                default -> formatter.format(format, arg0, arg1, arg2);
+            }
+        }
+
+        private void clear() {
+            format = null;
+            arg0 = null;
+            arg1 = null;
+            arg2 = null;
+        }
+    }
+}
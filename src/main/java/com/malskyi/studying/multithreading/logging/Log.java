@@ -0,0 +1,116 @@
+package com.malskyi.studying.multithreading.logging;
+
+import java.util.Locale;
+
+/**
+ * Console logging for worker hot paths, configured with system properties:
+ * <ul>
+ *     <li>{@code multithreading.log.mode} - {@code sync} prints right away, as the demos always did;
+ *     {@code async} hands the format and its arguments to a ring flushed by one background thread, so workers never
+ *     format or touch the {@code System.out} lock</li>
+ *     <li>{@code multithreading.log.level} - {@code debug} (per-container events), {@code info} (lifecycle events)
+ *     or {@code off}. Disabled levels return before anything is formatted or allocated.</li>
+ * </ul>
+ * Calls take up to three arguments instead of varargs, so no array is allocated per event. In async mode the arguments
+ * are formatted later on the writer thread, so pass values that won't change, like names and counts.
+ * Call {@link #flush()} before printing results, to get all asynchronous events out first.
+ */
+public final class Log {
+    public enum Mode {
+        SYNC, ASYNC
+    }
+
+    public enum Level {
+        DEBUG, INFO, OFF
+    }
+
+    private static final int RING_CAPACITY = 1 << 14;
+
+    private static final Mode MODE = Mode.valueOf(System.getProperty("multithreading.log.mode", "sync").toUpperCase(Locale.ROOT));
+    private static final Level LEVEL = Level.valueOf(System.getProperty("multithreading.log.level", "debug").toUpperCase(Locale.ROOT));
+    private static final AsyncLogWriter WRITER = MODE == Mode.ASYNC && LEVEL != Level.OFF
+            ? AsyncLogWriter.start(System.out, RING_CAPACITY)
+            : null;
+
+    private Log() {
+    }
+
+    public static boolean isDebugEnabled() {
+        return LEVEL == Level.DEBUG;
+    }
+
+    public static boolean isInfoEnabled() {
+        return LEVEL != Level.OFF;
+    }
+
+    public static void debug(String format) {
+        if (isDebugEnabled()) {
+            write(format, 0, null, null, null);
+        }
+    }
+
+    public static void debug(String format, Object arg0) {
+        if (isDebugEnabled()) {
+            write(format, 1, arg0, null, null);
+        }
+    }
+
+    public static void debug(String format, Object arg0, Object arg1) {
+        if (isDebugEnabled()) {
+            write(format, 2, arg0, arg1, null);
+        }
+    }
+
+    public static void debug(String format, Object arg0, Object arg1, Object arg2) {
+        if (isDebugEnabled()) {
+            write(format, 3, arg0, arg1, arg2);
+        }
+    }
+
+    public static void info(String format) {
+        if (isInfoEnabled()) {
+            write(format, 0, null, null, null);
+        }
+    }
+
+    public static void info(String format, Object arg0) {
+        if (isInfoEnabled()) {
+            write(format, 1, arg0, null, null);
+        }
+    }
+
+    public static void info(String format, Object arg0, Object arg1) {
+        if (isInfoEnabled()) {
+            write(format, 2, arg0, arg1, null);
+        }
+    }
+
+    public static void info(String format, Object arg0, Object arg1, Object arg2) {
+        if (isInfoEnabled()) {
+            write(format, 3, arg0, arg1, arg2);
+        }
+    }
+
+    /**
+     * Blocks until every event logged so far was written.
+     */
+    public static void flush() {
+        if (WRITER != null) {
+            WRITER.flush();
+        }
+        System.out.flush();
+    }
+
+    private static void write(String format, int argc, Object arg0, Object arg1, Object arg2) {
+        if (WRITER != null) {
+            WRITER.append(format, argc, arg0, arg1, arg2);
+            return;
+        }
+        switch (argc) {
+            case 0 -> System.out.printf(format);
+            case 1 -> System.out.printf(format, arg0);
+            case 2 -> System.out.printf(format, arg0, arg1);
+            default -> System.out.printf(format, arg0, arg1, arg2);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.malskyi.studying.multithreading.metrics;
+
+import com.malskyi.studying.multithreading.producer_consumer.MessageBuffer;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageBuffer} decorator timing {@code put} and {@code get}, including the time spent blocked on a full or
+ * empty buffer, which is the queue wait of producers and consumers. Also exposes the buffer depth.
+ */
+public final class InstrumentedBuffer<T> implements MessageBuffer<T> {
+    private final MessageBuffer<T> delegate;
+    private final Timer putTimer;
+    private final Timer getTimer;
+
+    public InstrumentedBuffer(MessageBuffer<T> delegate, String type) {
+        this.delegate = delegate;
+        final Tags tags = Tags.of("type", type);
+        this.putTimer = Timer.builder("buffer.put").description("Time to put a message, including waiting for space")
+                .tags(tags).publishPercentileHistogram().publishPercentiles(0.5, 0.99).register(Metrics.globalRegistry);
+        this.getTimer = Timer.builder("buffer.get").description("Time to get a message, including waiting for one")
+                .tags(tags).publishPercentileHistogram().publishPercentiles(0.5, 0.99).register(Metrics.globalRegistry);
+        LiveGauge.bind(Metrics.globalRegistry, "buffer.depth", "Messages waiting in the buffer", tags, delegate::size);
+    }
+
+    @Override
+    public void put(T message) {
+        final long startedAt = System.nanoTime();
+        try {
+            delegate.put(message);
+        } finally {
+            putTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public T get() {
+        final long startedAt = System.nanoTime();
+        try {
+            return delegate.get();
+        } finally {
+            getTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+}
@@ -0,0 +1,43 @@
+package com.malskyi.studying.multithreading.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Gauge whose source every run binds again.
+ * <p>
+ * A registry keeps the first gauge registered under a name and tags and holds its source only weakly, so a gauge
+ * registered by each run would keep reading the first run's queue, or NaN once that queue is collected. Instead there
+ * is one holder per name and tags, registered once, and each run points it at its own source.
+ */
+final class LiveGauge {
+    private static final Map<List<Object>, LiveGauge> GAUGES = new ConcurrentHashMap<>();
+
+    private volatile DoubleSupplier source = () -> 0;
+
+    private LiveGauge() {
+    }
+
+    static void bind(MeterRegistry registry, String name, String description, Tags tags, DoubleSupplier source) {
+        final LiveGauge gauge = GAUGES.computeIfAbsent(List.of(registry, name, tags), key -> {
+            final LiveGauge created = new LiveGauge();
+            Gauge.builder(name, created, LiveGauge::value)
+                    .description(description)
+                    .tags(tags)
+                    .strongReference(true)
+                    .register(registry);
+            return created;
+        });
+        gauge.source = source;
+    }
+
+    private double value() {
+        return source.getAsDouble();
+    }
+}
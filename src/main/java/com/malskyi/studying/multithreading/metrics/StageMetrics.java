@@ -0,0 +1,98 @@
+package com.malskyi.studying.multithreading.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micrometer instrumentation of one pipeline stage, tagged with the demo and stage name.
+ * Meters go to {@link Metrics#globalRegistry}, which Spring Boot joins with the Actuator registry, so a demo running
+ * inside the application shows up under {@code /actuator/metrics} and {@code /actuator/prometheus} while it runs.
+ * <ul>
+ *     <li>{@code container.stage.service} - time spent doing the stage's work, as a percentile histogram</li>
+ *     <li>{@code container.stage.queue.wait} - time a container waited in front of the stage</li>
+ *     <li>{@code container.queue.depth} - containers waiting in front of the stage</li>
+ *     <li>{@code container.stage.utilization} - share of its lifetime a worker thread spent working</li>
+ * </ul>
+ */
+public final class StageMetrics {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    private static final String VIRTUAL_THREADS = "virtual";
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+    private final Timer serviceTimer;
+    private final Timer queueWaitTimer;
+    private final Map<String, ThreadUtilization> utilizations = new ConcurrentHashMap<>();
+
+    private StageMetrics(MeterRegistry registry, String demo, String stage) {
+        this.registry = registry;
+        this.tags = Tags.of("demo", demo, "stage", stage);
+        this.serviceTimer = latencyTimer("container.stage.service", "Time spent doing the stage's work");
+        this.queueWaitTimer = latencyTimer("container.stage.queue.wait", "Time a container waited in front of the stage");
+    }
+
+    public static StageMetrics of(String demo, String stage) {
+        return new StageMetrics(Metrics.globalRegistry, demo, stage);
+    }
+
+    /**
+     * Points the depth gauge of the queue in front of this stage at {@code queue} and returns the queue.
+     */
+    public <Q extends Collection<?>> Q monitorQueue(Q queue) {
+        LiveGauge.bind(registry, "container.queue.depth", "Containers waiting in front of the stage", tags, queue::size);
+        return queue;
+    }
+
+    /**
+     * Records work done by the calling thread.
+     */
+    public void recordService(long nanos) {
+        serviceTimer.record(nanos, TimeUnit.NANOSECONDS);
+        utilization().busyNanos.add(nanos);
+    }
+
+    public void recordQueueWait(long nanos) {
+        queueWaitTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .publishPercentiles(PERCENTILES)
+                .register(registry);
+    }
+
+    /**
+     * One gauge per platform thread; virtual threads come and go in the thousands, so they share a single gauge.
+     */
+    private ThreadUtilization utilization() {
+        final Thread thread = Thread.currentThread();
+        final String name = thread.isVirtual() ? VIRTUAL_THREADS : thread.getName();
+        return utilizations.computeIfAbsent(name, key -> {
+            final ThreadUtilization utilization = new ThreadUtilization();
+            LiveGauge.bind(registry, "container.stage.utilization", "Share of its lifetime a worker thread spent working",
+                    tags.and("thread", key), utilization::value);
+            return utilization;
+        });
+    }
+
+    private static final class ThreadUtilization {
+        private final long createdAt = System.nanoTime();
+        private final LongAdder busyNanos = new LongAdder();
+
+        private double value() {
+            final long lifetime = System.nanoTime() - createdAt;
+            return lifetime == 0 ? 0 : Math.min(1.0, (double) busyNanos.sum() / lifetime);
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.malskyi.studying.multithreading.parallel_workers;
 
 import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerRegistry;
 import com.malskyi.studying.multithreading.ContainerStatus;
+import com.malskyi.studying.multithreading.ExecutionMode;
+import com.malskyi.studying.multithreading.GracefulShutdown;
+import com.malskyi.studying.multithreading.PinningMonitor;
+import com.malskyi.studying.multithreading.RunControl;
+import com.malskyi.studying.multithreading.ShutdownReport;
+import com.malskyi.studying.multithreading.StatusCounters;
+import com.malskyi.studying.multithreading.logging.Log;
+import com.malskyi.studying.multithreading.metrics.StageMetrics;
 import lombok.Data;
 import lombok.SneakyThrows;
 
+import java.util.Deque;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
@@ -16,88 +30,340 @@ import java.util.stream.Stream;
  *  Initialized: 18 containers
  *  Built: 18 containers
  *  Deployed: 18 containers
+ * REGISTRY with VIRTUAL results:
+ *  DEPLOYED: 60000 containers
+ * DELAY_JITTER 0.8 results, DEDICATED vs WORK_STEALING:
+ *  Deployed: 20 vs 21 containers
  */
 public class WorkersDemo {
-    private static final int THREADS_COUNT = 3;
+    /**
+     * OBJECTS allocates a {@link Container} with its name and attribution strings per container and tracks it in queues.
+     * REGISTRY keeps containers as ids in the primitive columns of a {@link ContainerRegistry}.
+     */
+    enum ContainerModel {
+        OBJECTS, REGISTRY
+    }
+
+    /**
+     * DEDICATED workers carry one container through all stages. With WORK_STEALING every stage is a {@link Step} on
+     * the deque of the worker that made it: a worker runs its own newest step first, so a container usually stays
+     * with one thread, and idle workers steal the oldest steps of busy ones. Applies to the OBJECTS model.
+     */
+    enum Scheduler {
+        DEDICATED, WORK_STEALING
+    }
+
+    private static final ExecutionMode EXECUTION_MODE = ExecutionMode.PLATFORM;
+    private static final ContainerModel CONTAINER_MODEL = ContainerModel.OBJECTS;
+    private static final Scheduler SCHEDULER = Scheduler.DEDICATED;
+    private static final int THREADS_COUNT = EXECUTION_MODE == ExecutionMode.VIRTUAL ? 10_000 : 3;
+    private static final int REGISTRY_CAPACITY = 1 << 20;
 
     private static final long INIT_DELAY = 100L;
     private static final long BUILD_DELAY = 300L;
     private static final long DEPLOY_DELAY = 600L;
+    /**
+     * Every stage takes its delay +/- up to this fraction of it, 0 for fixed stage durations.
+     */
+    private static final double DELAY_JITTER = 0.0;
+    /**
+     * Containers a WORK_STEALING worker takes in at once when it has no step of its own and nothing to steal.
+     */
+    private static final int INTAKE_BATCH = 2;
 
-    private static final Queue<Container> INITIALIZED_CONTAINERS = new ConcurrentLinkedQueue<>();
-    private static final Queue<Container> BUILT_CONTAINERS = new ConcurrentLinkedQueue<>();
-    private static final Queue<Container> DEPLOYED_CONTAINERS = new ConcurrentLinkedQueue<>();
+    private static final long EXECUTION_TIME_SECONDS = 6L;
+    private static final long DRAIN_TIMEOUT = 1500L;
+    private static final long ABORT_TIMEOUT = 500L;
 
     private static final AtomicInteger COUNTER = new AtomicInteger(1);
 
+    // Everything below belongs to one run, so runs next to each other do not share settings, counters or containers
+    private final AtomicBoolean acceptingContainers = new AtomicBoolean(true);
+    private final Queue<Container> createdContainers = new ConcurrentLinkedQueue<>();
+    private final StatusCounters counters = new StatusCounters();
+    private final RunControl.Setting initDelay;
+    private final RunControl.Setting buildDelay;
+    private final RunControl.Setting deployDelay;
+    private final ContainerRegistry registry = CONTAINER_MODEL == ContainerModel.REGISTRY
+            ? new ContainerRegistry(REGISTRY_CAPACITY)
+            : null;
+
+    private final StageMetrics initMetrics = StageMetrics.of("WorkersDemo", "init");
+    private final StageMetrics buildMetrics = StageMetrics.of("WorkersDemo", "build");
+    private final StageMetrics deployMetrics = StageMetrics.of("WorkersDemo", "deploy");
+
+    private WorkersDemo(RunControl control) {
+        this.initDelay = control.live("init.delay", INIT_DELAY);
+        this.buildDelay = control.live("build.delay", BUILD_DELAY);
+        this.deployDelay = control.live("deploy.delay", DEPLOY_DELAY);
+        control.track(counters);
+    }
+
     public static void main(String[] args) throws InterruptedException {
-        final List<Worker> workers = Stream.generate(Worker::new)
-                .limit(THREADS_COUNT)
+        run();
+        System.exit(0);
+    }
+
+    public static void run() throws InterruptedException {
+        run(RunControl.standalone());
+    }
+
+    public static void run(RunControl control) throws InterruptedException {
+        final int threadsCount = (int) control.fixed("workers", THREADS_COUNT);
+        final long executionSeconds = control.fixed("execution.seconds", EXECUTION_TIME_SECONDS);
+        new WorkersDemo(control).execute(control, threadsCount, executionSeconds);
+    }
+
+    private void execute(RunControl control, int threadsCount, long executionSeconds) throws InterruptedException {
+        final PinningMonitor pinningMonitor = EXECUTION_MODE.startPinningMonitor();
+        final ThreadFactory threadFactory = EXECUTION_MODE.threadFactory("Worker");
+        final List<Deque<Step>> deques = Stream.<Deque<Step>>generate(ConcurrentLinkedDeque::new)
+                .limit(threadsCount)
+                .toList();
+        final AtomicInteger workerIndex = new AtomicInteger();
+        final List<Thread> workers = Stream.generate(() -> threadFactory.newThread(registry != null
+                        ? new RegistryWorker()
+                        : SCHEDULER == Scheduler.WORK_STEALING ? new StealingWorker(workerIndex.getAndIncrement(), deques) : new Worker()))
+                .limit(threadsCount)
                 .toList();
 
         System.out.println("Starting workers...");
         workers.forEach(Thread::start);
 
-        Thread.sleep(6000L);
-
-        workers.forEach(Thread::interrupt);
+        for (long second = 0; second < executionSeconds && !control.awaitStop(1000L); second++) {
+            System.out.println(counters.progress());
+        }
 
-        Thread.sleep(300L);
-        System.out.println("Results:");
-        System.out.println("\tInitialized: " + INITIALIZED_CONTAINERS.size() + " containers");
-        System.out.println("\tBuilt: " + BUILT_CONTAINERS.size() + " containers");
-        System.out.println("\tDeployed: " + DEPLOYED_CONTAINERS.size() + " containers");
+        System.out.println("Stopping intake, waiting for in-flight containers...");
+        acceptingContainers.set(false);
+        GracefulShutdown.awaitOrInterrupt(workers, DRAIN_TIMEOUT, ABORT_TIMEOUT);
 
-        System.exit(0);
+        Log.flush();
+        if (registry != null) {
+            ShutdownReport.print(registry);
+        } else {
+            counters.print();
+            ShutdownReport.print(createdContainers);
+        }
+        if (pinningMonitor != null) {
+            pinningMonitor.close();
+        }
     }
 
     @Data
-    private static final class Worker extends Thread {
+    private final class Worker implements Runnable {
         @Override
         @SneakyThrows
         public void run() {
-            System.out.printf("[%s] Starting process...%n", super.getName());
-            while (!Thread.interrupted()) {
-                System.out.printf("[%s] Initializing container...%n", Thread.currentThread().getName());
+            Log.info("[%s] Starting process...%n", Thread.currentThread().getName());
+            while (acceptingContainers.get() && !Thread.currentThread().isInterrupted()) {
+                Log.debug("[%s] Initializing container...%n", Thread.currentThread().getName());
                 final Container container = new Container(COUNTER.getAndIncrement());
+                createdContainers.add(container);
+                long startedAt = System.nanoTime();
                 try {
-                    Thread.sleep(INIT_DELAY);
+                    Thread.sleep(jittered(initDelay.get()));
                 } catch (InterruptedException e) {
-                    System.out.printf("[%s] InterruptedException during container initialization%n", getClass().getSimpleName());
-                    System.out.printf("[%s] Stopping initialization process!%n", getClass().getSimpleName());
+                    Log.info("[%s] InterruptedException during container initialization%n", getClass().getSimpleName());
+                    Log.info("[%s] Stopping initialization process!%n", getClass().getSimpleName());
                     break;
                 }
-                container.setInitializedBy(String.format("[%s] %s ", Thread.currentThread().getName(), getClass().getSimpleName()));
+                container.setInitializedBy("[" + Thread.currentThread().getName() + "] " + getClass().getSimpleName() + " ");
                 container.setContainerStatus(ContainerStatus.INITIALIZED);
-                INITIALIZED_CONTAINERS.add(container);
+                initMetrics.recordService(System.nanoTime() - startedAt);
+                counters.record(ContainerStatus.INITIALIZED, container);
 
-                System.out.printf("[%s] Building %s...%n", getClass().getSimpleName(), container.getName());
+                Log.debug("[%s] Building %s...%n", getClass().getSimpleName(), container.getName());
+                startedAt = System.nanoTime();
                 try {
-                    sleep(BUILD_DELAY);
+                    Thread.sleep(jittered(buildDelay.get()));
                 } catch (InterruptedException e) {
-                    System.out.printf("[%s] InterruptedException caught during build%n", getClass().getSimpleName());
-                    System.out.printf("[%s] Finishing process without completion%n", getClass().getSimpleName());
+                    Log.info("[%s] InterruptedException caught during build%n", getClass().getSimpleName());
+                    Log.info("[%s] Finishing process without completion%n", getClass().getSimpleName());
                     break;
                 }
-                container.setBuildBy(String.format("[%s] %s ", Thread.currentThread().getName(), getClass().getSimpleName()));
+                container.setBuildBy("[" + Thread.currentThread().getName() + "] " + getClass().getSimpleName() + " ");
                 container.setContainerStatus(ContainerStatus.BUILT);
-                BUILT_CONTAINERS.add(container);
+                buildMetrics.recordService(System.nanoTime() - startedAt);
+                counters.record(ContainerStatus.BUILT, container);
 
-                System.out.printf("[%s] Deploying %s...%n", getClass().getSimpleName(), container.getName());
+                Log.debug("[%s] Deploying %s...%n", getClass().getSimpleName(), container.getName());
+                startedAt = System.nanoTime();
                 try {
-                    Thread.sleep(DEPLOY_DELAY);
+                    Thread.sleep(jittered(deployDelay.get()));
                 } catch (InterruptedException e) {
-                    System.out.printf("[%s] InterruptedException caught inside deploy worker during deployment finish!%n", getClass().getSimpleName());
-                    System.out.printf("[%s] Currently deployed %s containers%n", getClass().getSimpleName(), DEPLOYED_CONTAINERS.size());
-                    System.out.printf("[%s] Finishing deployment process!%n", getClass().getSimpleName());
+                    Log.info("[%s] InterruptedException caught during deployment, %s stays undeployed!%n", getClass().getSimpleName(), container.getName());
+                    Log.info("[%s] Currently deployed %s containers%n", getClass().getSimpleName(), counters.count(ContainerStatus.DEPLOYED));
+                    Log.info("[%s] Finishing deployment process!%n", getClass().getSimpleName());
                     break;
-                } finally {
-                    container.setDeployedBy(String.format("[%s] %s ", Thread.currentThread().getName(), getClass().getSimpleName()));
-                    container.setContainerStatus(ContainerStatus.DEPLOYED);
-                    DEPLOYED_CONTAINERS.add(container);
+                }
+                container.setDeployedBy("[" + Thread.currentThread().getName() + "] " + getClass().getSimpleName() + " ");
+                container.setContainerStatus(ContainerStatus.DEPLOYED);
+                deployMetrics.recordService(System.nanoTime() - startedAt);
+                counters.record(ContainerStatus.DEPLOYED, container);
+            }
+        }
+
+    }
+
+    /**
+     * Same loop as {@link Worker}, but a container is only an id in {@link #registry}.
+     */
+    private final class RegistryWorker implements Runnable {
+        @Override
+        public void run() {
+            final int self = registry.registerWorker("[" + Thread.currentThread().getName() + "] " + getClass().getSimpleName() + " ");
+            while (acceptingContainers.get() && !Thread.currentThread().isInterrupted()) {
+                final int container = registry.create();
+                if (!advance(container, ContainerStatus.INITIALIZED, initDelay.get(), self, initMetrics)
+                        || !advance(container, ContainerStatus.BUILT, buildDelay.get(), self, buildMetrics)
+                        || !advance(container, ContainerStatus.DEPLOYED, deployDelay.get(), self, deployMetrics)) {
+                    break;
+                }
+            }
+        }
+
+        private boolean advance(int container, ContainerStatus status, long delay, int self, StageMetrics metrics) {
+            final long startedAt = System.nanoTime();
+            try {
+                Thread.sleep(jittered(delay));
+            } catch (InterruptedException e) {
+                Log.info("[%s] Interrupted, Container-%s stays %s%n", getClass().getSimpleName(), container, registry.status(container));
+                return false;
+            }
+            registry.advance(container, status, self);
+            metrics.recordService(System.nanoTime() - startedAt);
+            counters.record(status, registry, container);
+            return true;
+        }
+    }
+
+    private record Step(Container container, ContainerStatus next) {
+    }
+
+    private final class StealingWorker implements Runnable {
+        private final int index;
+        private final List<Deque<Step>> deques;
+        private final Deque<Step> own;
+
+        StealingWorker(int index, List<Deque<Step>> deques) {
+            this.index = index;
+            this.deques = deques;
+            this.own = deques.get(index);
+        }
+
+        @Override
+        public void run() {
+            Log.info("[%s] Starting process...%n", Thread.currentThread().getName());
+            while (!Thread.currentThread().isInterrupted()) {
+                Step step = own.pollFirst();
+                if (step == null) {
+                    step = steal();
+                }
+                if (step == null) {
+                    if (!acceptingContainers.get()) {
+                        // whoever holds a step of an in-flight container also queues its next steps, so leaving is safe
+                        return;
+                    }
+                    intake();
+                    continue;
+                }
+                final Step next = execute(step);
+                if (next == null) {
+                    return;
+                }
+                if (next.next() != null) {
+                    own.addFirst(next);
+                }
+            }
+        }
+
+        private void intake() {
+            for (int i = 0; i < INTAKE_BATCH; i++) {
+                final Container container = new Container(COUNTER.getAndIncrement());
+                createdContainers.add(container);
+                own.addLast(new Step(container, ContainerStatus.INITIALIZED));
+            }
+        }
+
+        /**
+         * Takes the oldest step of another worker, starting from a random victim.
+         */
+        private Step steal() {
+            final int start = ThreadLocalRandom.current().nextInt(deques.size());
+            for (int i = 0; i < deques.size(); i++) {
+                final int victim = (start + i) % deques.size();
+                if (victim == index) {
+                    continue;
+                }
+                final Step step = deques.get(victim).pollLast();
+                if (step != null) {
+                    Log.debug("[%s] Stole %s of %s%n", Thread.currentThread().getName(), step.next(), step.container().getName());
+                    return step;
                 }
             }
+            return null;
         }
 
+        /**
+         * @return the container's next step, a step without a stage once it is deployed, or null if interrupted
+         */
+        private Step execute(Step step) {
+            final Container container = step.container();
+            final String attribution = "[" + Thread.currentThread().getName() + "] " + getClass().getSimpleName() + " ";
+            final long startedAt = System.nanoTime();
+            switch (step.next()) {
+                case INITIALIZED -> {
+                    Log.debug("[%s] Initializing %s...%n", Thread.currentThread().getName(), container.getName());
+                    if (!pause(initDelay.get(), container)) {
+                        return null;
+                    }
+                    container.setInitializedBy(attribution);
+                    initMetrics.recordService(System.nanoTime() - startedAt);
+                }
+                case BUILT -> {
+                    Log.debug("[%s] Building %s...%n", Thread.currentThread().getName(), container.getName());
+                    if (!pause(buildDelay.get(), container)) {
+                        return null;
+                    }
+                    container.setBuildBy(attribution);
+                    buildMetrics.recordService(System.nanoTime() - startedAt);
+                }
+                case DEPLOYED -> {
+                    Log.debug("[%s] Deploying %s...%n", Thread.currentThread().getName(), container.getName());
+                    if (!pause(deployDelay.get(), container)) {
+                        return null;
+                    }
+                    container.setDeployedBy(attribution);
+                    deployMetrics.recordService(System.nanoTime() - startedAt);
+                }
+                default -> throw new IllegalStateException("No stage leads to " + step.next());
+            }
+            container.setContainerStatus(step.next());
+            counters.record(step.next(), container);
+            return new Step(container, switch (step.next()) {
+                case INITIALIZED -> ContainerStatus.BUILT;
+                case BUILT -> ContainerStatus.DEPLOYED;
+                default -> null;
+            });
+        }
+
+        private boolean pause(long delay, Container container) {
+            try {
+                Thread.sleep(jittered(delay));
+                return true;
+            } catch (InterruptedException e) {
+                Log.info("[%s] Interrupted, %s stays %s%n", Thread.currentThread().getName(), container.getName(), container.getContainerStatus());
+                return false;
+            }
+        }
+    }
+
+    private static long jittered(long delay) {
+        if (DELAY_JITTER == 0.0) {
+            return delay;
+        }
+        final long spread = (long) (delay * DELAY_JITTER);
+        return delay + ThreadLocalRandom.current().nextLong(-spread, spread + 1);
     }
 }
@@ -0,0 +1,77 @@
+package com.malskyi.studying.multithreading.persistence;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerStatus;
+import com.malskyi.studying.multithreading.ContainerView;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One lifecycle transition of a container: the status it reached, who got it there and when.
+ * Ids come from a sequence allocated 100 at a time, an identity column would make Hibernate insert every event on its
+ * own and defeat JDBC batching.
+ */
+@Entity
+@Table(name = "container_event", indexes = @Index(name = "container_event_container", columnList = "containerName"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ContainerEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "container_event_seq")
+    @SequenceGenerator(name = "container_event_seq", sequenceName = "container_event_seq", allocationSize = 100)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private String containerName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, updatable = false)
+    private ContainerStatus status;
+
+    @Column(updatable = false)
+    private String worker;
+
+    @Column(nullable = false, updatable = false)
+    private Instant occurredAt;
+
+    /**
+     * Copies what the container looks like now, since the next stage goes on changing it.
+     */
+    ContainerEvent(ContainerStatus status, Container container) {
+        this(status, container.getName(), switch (status) {
+            case INITIALIZED -> container.getInitializedBy();
+            case BUILT -> container.getBuildBy();
+            case DEPLOYED -> container.getDeployedBy();
+            case EMPTY -> null;
+        });
+    }
+
+    ContainerEvent(ContainerStatus status, ContainerView container) {
+        this(status, container.getName(), switch (status) {
+            case INITIALIZED -> container.getInitializedBy();
+            case BUILT -> container.getBuildBy();
+            case DEPLOYED -> container.getDeployedBy();
+            case EMPTY -> null;
+        });
+    }
+
+    private ContainerEvent(ContainerStatus status, String containerName, String worker) {
+        this.containerName = containerName;
+        this.status = status;
+        this.worker = worker;
+        this.occurredAt = Instant.now();
+    }
+}
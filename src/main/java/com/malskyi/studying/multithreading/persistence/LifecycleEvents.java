@@ -0,0 +1,42 @@
+package com.malskyi.studying.multithreading.persistence;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerRegistry;
+import com.malskyi.studying.multithreading.ContainerStatus;
+
+/**
+ * Static entry point the demos report container transitions to, the way they report messages to
+ * {@link com.malskyi.studying.multithreading.logging.Log}. Does nothing until a {@link LifecycleWriter} is installed,
+ * which {@link LifecyclePersistence} does when the demos run inside the application.
+ */
+public final class LifecycleEvents {
+    private static volatile LifecycleWriter writer;
+
+    private LifecycleEvents() {
+    }
+
+    public static void install(LifecycleWriter lifecycleWriter) {
+        writer = lifecycleWriter;
+    }
+
+    public static void uninstall() {
+        writer = null;
+    }
+
+    public static void record(ContainerStatus status, Container container) {
+        final LifecycleWriter current = writer;
+        if (current != null) {
+            current.offer(status, container);
+        }
+    }
+
+    /**
+     * Same for a container kept in a {@link ContainerRegistry}; its view is only created while a writer is installed.
+     */
+    public static void record(ContainerStatus status, ContainerRegistry registry, int id) {
+        final LifecycleWriter current = writer;
+        if (current != null) {
+            current.offer(status, registry.view(id));
+        }
+    }
+}
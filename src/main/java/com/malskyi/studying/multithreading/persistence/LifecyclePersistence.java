@@ -0,0 +1,33 @@
+package com.malskyi.studying.multithreading.persistence;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Starts the {@link LifecycleWriter} on the application's JPA setup and installs it for the demos, if
+ * {@code multithreading.persistence.enabled} is set.
+ * The flush size is also Hibernate's JDBC batch size, see {@code application.properties}.
+ */
+@Component
+@ConditionalOnProperty(name = "multithreading.persistence.enabled", havingValue = "true")
+class LifecyclePersistence {
+    private final LifecycleWriter writer;
+
+    LifecyclePersistence(EntityManagerFactory entityManagerFactory,
+                         @Value("${multithreading.persistence.queue-capacity}") int queueCapacity,
+                         @Value("${multithreading.persistence.flush-size}") int flushSize,
+                         @Value("${multithreading.persistence.flush-interval-millis}") long flushIntervalMillis) {
+        this.writer = new LifecycleWriter(entityManagerFactory, queueCapacity, flushSize, flushIntervalMillis);
+        LifecycleEvents.install(writer);
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        LifecycleEvents.uninstall();
+        writer.close(5000L);
+        System.out.println(writer.summary());
+    }
+}
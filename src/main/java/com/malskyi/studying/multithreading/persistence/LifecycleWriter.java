@@ -0,0 +1,148 @@
+package com.malskyi.studying.multithreading.persistence;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerStatus;
+import com.malskyi.studying.multithreading.ContainerView;
+import com.malskyi.studying.multithreading.logging.Log;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind stage persisting {@link ContainerEvent}s on its own thread.
+ * <p>
+ * Pipeline threads only {@link #offer} an event to a bounded queue, which never blocks: when the database falls behind
+ * and the queue is full, the event is dropped and counted instead of slowing the pipeline down. The writer thread
+ * collects up to {@code flushSize} events, or whatever arrived within {@code flushIntervalMillis} of the first one,
+ * and persists them in one transaction; with {@code hibernate.jdbc.batch_size} set to the flush size, Hibernate sends
+ * them as a single JDBC batch.
+ */
+public final class LifecycleWriter implements AutoCloseable {
+    private final EntityManagerFactory entityManagerFactory;
+    private final int flushSize;
+    private final long flushIntervalMillis;
+    private final BlockingQueue<ContainerEvent> queue;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    public LifecycleWriter(EntityManagerFactory entityManagerFactory, int queueCapacity, int flushSize, long flushIntervalMillis) {
+        if (queueCapacity < 1 || flushSize < 1 || flushIntervalMillis < 1) {
+            throw new IllegalArgumentException(String.format("Invalid lifecycle writer: capacity %s, flush size %s, flush interval %s ms",
+                    queueCapacity, flushSize, flushIntervalMillis));
+        }
+        this.entityManagerFactory = entityManagerFactory;
+        this.flushSize = flushSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.thread = new Thread(this::run, "LifecycleWriter");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queues the transition for writing; drops it if the writer is behind or closed.
+     */
+    public void offer(ContainerStatus status, Container container) {
+        if (!running || !queue.offer(new ContainerEvent(status, container))) {
+            dropped.increment();
+        }
+    }
+
+    public void offer(ContainerStatus status, ContainerView container) {
+        if (!running || !queue.offer(new ContainerEvent(status, container))) {
+            dropped.increment();
+        }
+    }
+
+    public String summary() {
+        return String.format("[%s] %s events written in %s flushes, %s dropped, %s failed",
+                getClass().getSimpleName(), written.sum(), flushes.sum(), dropped.sum(), failed.sum());
+    }
+
+    /**
+     * Stops taking events and waits up to {@code timeoutMillis} for the queued ones to be written.
+     */
+    public void close(long timeoutMillis) throws InterruptedException {
+        running = false;
+        thread.join(timeoutMillis);
+    }
+
+    @Override
+    public void close() {
+        try {
+            close(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        final List<ContainerEvent> batch = new ArrayList<>(flushSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                collect(batch);
+                if (!batch.isEmpty()) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.info("[%s] Interrupted, %s events left unwritten%n", getClass().getSimpleName(), queue.size() + batch.size());
+        }
+    }
+
+    private void collect(List<ContainerEvent> batch) throws InterruptedException {
+        final ContainerEvent first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (batch.size() < flushSize) {
+            queue.drainTo(batch, flushSize - batch.size());
+            final long remaining = deadline - System.nanoTime();
+            if (batch.size() >= flushSize || remaining <= 0 || !running) {
+                return;
+            }
+            final ContainerEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<ContainerEvent> batch) {
+        final EntityManager entityManager = entityManagerFactory.createEntityManager();
+        final EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            for (ContainerEvent event : batch) {
+                entityManager.persist(event);
+            }
+            transaction.commit();
+            written.add(batch.size());
+            flushes.increment();
+        } catch (RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            failed.add(batch.size());
+            Log.info("[%s] Failed to write %s events: %s%n", getClass().getSimpleName(), batch.size(), e);
+        } finally {
+            entityManager.close();
+        }
+    }
+}
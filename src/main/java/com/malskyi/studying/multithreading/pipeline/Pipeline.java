@@ -0,0 +1,245 @@
+package com.malskyi.studying.multithreading.pipeline;
+
+import com.malskyi.studying.multithreading.ExecutionMode;
+import com.malskyi.studying.multithreading.logging.Log;
+import com.malskyi.studying.multithreading.metrics.StageMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Generic assembly line. Every {@link Stage} gets its own input queue and workers; items submitted to the pipeline
+ * travel through the stages in declaration order and end up in the sink.
+ * Adjacent cheap stages can be fused, so they run on the same thread without a queue hop in between.
+ * <p>
+ * {@link #shutdown(long)} drains the pipeline with a poison pill: a worker meeting it puts it back for its siblings,
+ * and the last worker of a stage passes it on to the next stage, behind all real items. A stage function or sink that
+ * fails only loses its item, so a worker always lives to pass the pill on.
+ */
+public final class Pipeline<T> implements AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 100;
+    private static final long JOIN_TIMEOUT = 1000L;
+    private static final Object POISON_PILL = new Object();
+
+    private final String name;
+    private final List<Stage<T>> stages;
+    private final List<BlockingQueue<T>> queues = new ArrayList<>();
+    private final Consumer<T> sink;
+    private final ExecutionMode executionMode;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean accepting = true;
+
+    private Pipeline(String name, List<Stage<T>> stages, Consumer<T> sink, ExecutionMode executionMode) {
+        this.name = name;
+        this.stages = List.copyOf(stages);
+        this.sink = sink;
+        this.executionMode = executionMode;
+        for (Stage<T> stage : this.stages) {
+            queues.add(stage.queueType().create(stage.capacity()));
+        }
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public synchronized void start() {
+        if (!workers.isEmpty()) {
+            throw new IllegalStateException("Pipeline is already started");
+        }
+        for (int i = 0; i < stages.size(); i++) {
+            final Stage<T> stage = stages.get(i);
+            final BlockingQueue<T> input = queues.get(i);
+            final BlockingQueue<T> next = i + 1 < stages.size() ? queues.get(i + 1) : null;
+            final AtomicInteger liveWorkers = new AtomicInteger(stage.parallelism());
+            final StageMetrics metrics = StageMetrics.of(name, stage.name());
+            metrics.monitorQueue(input);
+            final ThreadFactory threadFactory = executionMode.threadFactory(stage.name());
+            for (int worker = 0; worker < stage.parallelism(); worker++) {
+                final Thread thread = threadFactory.newThread(new StageWorker<>(stage, input, next, sink, liveWorkers, metrics));
+                workers.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Hands an item to the first stage, blocking while its queue is full.
+     */
+    public void submit(T item) throws InterruptedException {
+        if (!accepting) {
+            throw new IllegalStateException("Pipeline is shut down");
+        }
+        queues.get(0).put(item);
+    }
+
+    public List<String> stageNames() {
+        return stages.stream().map(Stage::name).toList();
+    }
+
+    /**
+     * Amount of items waiting in front of the stage with the given index.
+     */
+    public int queueDepth(int stage) {
+        return queues.get(stage).size();
+    }
+
+    /**
+     * Stops accepting items and lets everything submitted so far travel through all stages.
+     * Returns true if the pipeline drained within {@code timeoutMillis}; otherwise falls back to {@link #close()}.
+     * Submitters must have stopped before, an item submitted concurrently may end up behind the poison pill.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized boolean shutdown(long timeoutMillis) throws InterruptedException {
+        accepting = false;
+        queues.get(0).put((T) POISON_PILL);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Thread worker : workers) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            }
+        }
+        if (workers.stream().noneMatch(Thread::isAlive)) {
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    /**
+     * Interrupts all workers and waits for them to finish. Items still queued are dropped. If the caller is interrupted
+     * meanwhile, it stops waiting and keeps its interrupt flag.
+     */
+    @Override
+    public synchronized void close() {
+        accepting = false;
+        workers.forEach(Thread::interrupt);
+        try {
+            for (Thread worker : workers) {
+                worker.join(JOIN_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record StageWorker<T>(Stage<T> stage, BlockingQueue<T> input, BlockingQueue<T> next, Consumer<T> sink,
+                                  AtomicInteger liveWorkers, StageMetrics metrics) implements Runnable {
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                final T item;
+                try {
+                    item = input.take();
+                    if (item == POISON_PILL) {
+                        passPoisonPillOn(item);
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+                final T result;
+                final long startedAt = System.nanoTime();
+                try {
+                    result = stage.function().apply(item);
+                    metrics.recordService(System.nanoTime() - startedAt);
+                } catch (InterruptedException e) {
+                    Log.info("[%s] Interrupted while processing %s%n", stage.name(), item);
+                    break;
+                } catch (RuntimeException e) {
+                    Log.info("[%s] Failed to process %s: %s%n", stage.name(), item, e);
+                    continue;
+                }
+                if (result == null) {
+                    Log.debug("[%s] Dropped %s%n", stage.name(), item);
+                    continue;
+                }
+                try {
+                    if (next == null) {
+                        sink.accept(result);
+                    } else {
+                        next.put(result);
+                    }
+                } catch (InterruptedException e) {
+                    Log.info("[%s] Interrupted while handing over %s%n", stage.name(), result);
+                    break;
+                } catch (RuntimeException e) {
+                    Log.info("[%s] Failed to hand over %s: %s%n", stage.name(), result, e);
+                }
+            }
+        }
+
+        /**
+         * The last worker of the stage forwards the pill to the next stage, every other one returns it to its siblings.
+         */
+        private void passPoisonPillOn(T pill) throws InterruptedException {
+            if (liveWorkers.decrementAndGet() > 0) {
+                input.put(pill);
+            } else if (next != null) {
+                next.put(pill);
+            }
+        }
+    }
+
+    public static final class Builder<T> {
+        private String name = "Pipeline";
+        private final List<Stage<T>> stages = new ArrayList<>();
+        private Consumer<T> sink = item -> {
+        };
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+        private Builder() {
+        }
+
+        /**
+         * Name the pipeline's metrics are tagged with.
+         */
+        public Builder<T> name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder<T> stage(String name, int parallelism, StageFunction<T> function) {
+            return stage(name, parallelism, QueueType.ARRAY, DEFAULT_CAPACITY, function);
+        }
+
+        public Builder<T> stage(String name, int parallelism, QueueType queueType, int capacity, StageFunction<T> function) {
+            stages.add(new Stage<>(name, parallelism, queueType, capacity, function));
+            return this;
+        }
+
+        /**
+         * Runs {@code function} on the workers of the previous stage, right after it, instead of behind another queue.
+         */
+        public Builder<T> fusedStage(String name, StageFunction<T> function) {
+            if (stages.isEmpty()) {
+                throw new IllegalStateException(String.format("Stage %s has no previous stage to be fused with", name));
+            }
+            stages.add(stages.remove(stages.size() - 1).fuse(name, function));
+            return this;
+        }
+
+        public Builder<T> sink(Consumer<T> sink) {
+            this.sink = sink;
+            return this;
+        }
+
+        public Builder<T> executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        public Pipeline<T> build() {
+            if (stages.isEmpty()) {
+                throw new IllegalStateException("Pipeline needs at least one stage");
+            }
+            return new Pipeline<>(name, stages, sink, executionMode);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.malskyi.studying.multithreading.pipeline;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerStatus;
+import com.malskyi.studying.multithreading.ExecutionMode;
+import com.malskyi.studying.multithreading.RunControl;
+import com.malskyi.studying.multithreading.ShutdownReport;
+import com.malskyi.studying.multithreading.StatusCounters;
+import com.malskyi.studying.multithreading.logging.Log;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The container workflow of {@code AssemblyDemo}, declared on top of {@link Pipeline}.
+ * Results (parallelism 1/3/6, no fusion):
+ *  Submitted: 160 containers
+ *  Deployed: 80 containers (after a 3 s drain)
+ */
+public class PipelineDemo {
+    private static final ExecutionMode EXECUTION_MODE = ExecutionMode.PLATFORM;
+
+    private static final int INIT_PARALLELISM = 1;
+    private static final int BUILD_PARALLELISM = 3;
+    private static final int DEPLOY_PARALLELISM = 6;
+
+    private static final long INIT_DELAY = 100L;
+    private static final long BUILD_DELAY = 300L;
+    private static final long DEPLOY_DELAY = 600L;
+
+    private static final int QUEUE_CAPACITY = 100;
+    private static final boolean FUSE_INIT_AND_BUILD = false;
+    private static final long EXECUTION_TIME_SECONDS = 6L;
+    private static final long DRAIN_TIMEOUT = 3000L;
+
+    private static final AtomicInteger COUNTER = new AtomicInteger(1);
+
+    public static void main(String[] args) throws InterruptedException {
+        run();
+    }
+
+    public static void run() throws InterruptedException {
+        run(RunControl.standalone());
+    }
+
+    public static void run(RunControl control) throws InterruptedException {
+        final long executionSeconds = control.fixed("execution.seconds", EXECUTION_TIME_SECONDS);
+        final RunControl.Setting initDelay = control.live("init.delay", INIT_DELAY);
+        final RunControl.Setting buildDelay = control.live("build.delay", BUILD_DELAY);
+        final RunControl.Setting deployDelay = control.live("deploy.delay", DEPLOY_DELAY);
+        final Queue<Container> createdContainers = new ConcurrentLinkedQueue<>();
+        final StatusCounters counters = new StatusCounters();
+        control.track(counters);
+
+        final Pipeline.Builder<Container> builder = Pipeline.<Container>builder()
+                .name("PipelineDemo")
+                .executionMode(EXECUTION_MODE)
+                .stage("InitWorker", INIT_PARALLELISM, QueueType.ARRAY, QUEUE_CAPACITY, container -> init(container, initDelay.get(), counters));
+        if (FUSE_INIT_AND_BUILD) {
+            builder.fusedStage("BuildWorker", container -> build(container, buildDelay.get(), counters));
+        } else {
+            builder.stage("BuildWorker", BUILD_PARALLELISM, QueueType.ARRAY, QUEUE_CAPACITY, container -> build(container, buildDelay.get(), counters));
+        }
+        final Pipeline<Container> pipeline = builder
+                .stage("DeployWorker", DEPLOY_PARALLELISM, QueueType.ARRAY, QUEUE_CAPACITY, container -> deploy(container, deployDelay.get()))
+                .sink(container -> counters.record(ContainerStatus.DEPLOYED, container))
+                .build();
+
+        System.out.println("Starting pipeline " + pipeline.stageNames() + "...");
+        pipeline.start();
+
+        final Thread feeder = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                final Container container = new Container(COUNTER.getAndIncrement());
+                try {
+                    pipeline.submit(container);
+                    createdContainers.add(container);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }, "Feeder");
+        feeder.start();
+
+        control.awaitStop(TimeUnit.SECONDS.toMillis(executionSeconds));
+
+        feeder.interrupt();
+        feeder.join();
+        System.out.println("Draining pipeline...");
+        System.out.println(pipeline.shutdown(DRAIN_TIMEOUT) ? "Pipeline drained!" : "Drain deadline exceeded, workers interrupted!");
+
+        Log.flush();
+        System.out.println("Results:");
+        System.out.println("\tSubmitted: " + createdContainers.size() + " containers");
+        System.out.println("\tInitialized: " + counters.count(ContainerStatus.INITIALIZED) + " containers");
+        System.out.println("\tBuilt: " + counters.count(ContainerStatus.BUILT) + " containers");
+        System.out.println("\tDeployed: " + counters.count(ContainerStatus.DEPLOYED) + " containers");
+        ShutdownReport.print(createdContainers);
+    }
+
+    private static Container init(Container container, long delay, StatusCounters counters) throws InterruptedException {
+        Log.debug("[%s] Initializing %s...%n", Thread.currentThread().getName(), container.getName());
+        Thread.sleep(delay);
+        container.setInitializedBy(Thread.currentThread().getName());
+        container.setContainerStatus(ContainerStatus.INITIALIZED);
+        counters.record(ContainerStatus.INITIALIZED, container);
+        return container;
+    }
+
+    private static Container build(Container container, long delay, StatusCounters counters) throws InterruptedException {
+        Log.debug("[%s] Building %s...%n", Thread.currentThread().getName(), container.getName());
+        Thread.sleep(delay);
+        container.setBuildBy(Thread.currentThread().getName());
+        container.setContainerStatus(ContainerStatus.BUILT);
+        counters.record(ContainerStatus.BUILT, container);
+        return container;
+    }
+
+    private static Container deploy(Container container, long delay) throws InterruptedException {
+        Log.debug("[%s] Deploying %s...%n", Thread.currentThread().getName(), container.getName());
+        Thread.sleep(delay);
+        container.setDeployedBy(Thread.currentThread().getName());
+        container.setContainerStatus(ContainerStatus.DEPLOYED);
+        return container;
+    }
+}
@@ -0,0 +1,32 @@
+package com.malskyi.studying.multithreading.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * Hand-off queue in front of a pipeline stage.
+ */
+public enum QueueType {
+    /**
+     * Preallocated, single lock. The default.
+     */
+    ARRAY,
+    /**
+     * Separate put and take locks, allocates a node per item.
+     */
+    LINKED,
+    /**
+     * No buffering at all, the capacity is ignored: every hand-off waits for the other side.
+     */
+    SYNCHRONOUS;
+
+    <T> BlockingQueue<T> create(int capacity) {
+        return switch (this) {
+            case ARRAY -> new ArrayBlockingQueue<>(capacity);
+            case LINKED -> new LinkedBlockingQueue<>(capacity);
+            case SYNCHRONOUS -> new SynchronousQueue<>();
+        };
+    }
+}
@@ -0,0 +1,21 @@
+package com.malskyi.studying.multithreading.pipeline;
+
+/**
+ * Declaration of one pipeline stage: {@code parallelism} workers take items from a queue of the given type and
+ * capacity and apply {@code function} to them.
+ */
+public record Stage<T>(String name, int parallelism, QueueType queueType, int capacity, StageFunction<T> function) {
+
+    public Stage {
+        if (parallelism < 1 || capacity < 1) {
+            throw new IllegalArgumentException(String.format("Invalid stage %s: parallelism %s, capacity %s", name, parallelism, capacity));
+        }
+    }
+
+    /**
+     * Returns a stage running this stage's function followed by {@code next} on the same thread.
+     */
+    Stage<T> fuse(String nextName, StageFunction<T> next) {
+        return new Stage<>(name + "+" + nextName, parallelism, queueType, capacity, function.andThen(next));
+    }
+}
@@ -0,0 +1,16 @@
+package com.malskyi.studying.multithreading.pipeline;
+
+/**
+ * Work done by one pipeline stage on one item. Returns the item handed to the next stage, or null to drop it.
+ */
+@FunctionalInterface
+public interface StageFunction<T> {
+    T apply(T item) throws InterruptedException;
+
+    default StageFunction<T> andThen(StageFunction<T> next) {
+        return item -> {
+            final T result = apply(item);
+            return result == null ? null : next.apply(result);
+        };
+    }
+}
@@ -0,0 +1,22 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+/**
+ * Available {@link ArrivalSchedule}s, selectable by configuration.
+ */
+public enum ArrivalPattern {
+    CONSTANT, RAMP, POISSON, BURSTY;
+
+    private static final int BURST_SIZE = 10;
+
+    /**
+     * @param rampNanos how long {@link #RAMP} takes to reach the rate
+     */
+    public ArrivalSchedule schedule(double ratePerSecond, long rampNanos, long seed) {
+        return switch (this) {
+            case CONSTANT -> ArrivalSchedule.constant(ratePerSecond);
+            case RAMP -> ArrivalSchedule.ramp(ratePerSecond, rampNanos);
+            case POISSON -> ArrivalSchedule.poisson(ratePerSecond, seed);
+            case BURSTY -> ArrivalSchedule.bursty(ratePerSecond, BURST_SIZE);
+        };
+    }
+}
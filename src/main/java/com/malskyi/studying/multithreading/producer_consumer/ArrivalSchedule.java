@@ -0,0 +1,77 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When the messages of an open-loop producer are due, independently of how fast they are consumed.
+ * Times are offsets in nanoseconds from the start of the load; a schedule keeps state and serves a single producer.
+ */
+public interface ArrivalSchedule {
+    long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * @return the offset the next message is due at, not before {@code previous}
+     */
+    long next(long previous);
+
+    static ArrivalSchedule constant(double ratePerSecond) {
+        final long interval = interval(ratePerSecond);
+        return previous -> previous + interval;
+    }
+
+    /**
+     * Rate growing linearly from zero to {@code ratePerSecond} over {@code rampNanos}, then staying there.
+     * During the ramp {@code n} messages are due by {@code sqrt(2 * rampNanos * n / rate)}.
+     */
+    static ArrivalSchedule ramp(double ratePerSecond, long rampNanos) {
+        final long interval = interval(ratePerSecond);
+        final double step = 2.0 * rampNanos * NANOS_PER_SECOND / ratePerSecond;
+        if (rampNanos <= 0) {
+            return constant(ratePerSecond);
+        }
+        return previous -> previous >= rampNanos
+                ? previous + interval
+                : Math.max(previous + 1, (long) Math.sqrt((double) previous * previous + step));
+    }
+
+    /**
+     * Exponentially distributed gaps, i.e. independent arrivals as from many unrelated clients.
+     */
+    static ArrivalSchedule poisson(double ratePerSecond, long seed) {
+        final double meanInterval = NANOS_PER_SECOND / requirePositive(ratePerSecond);
+        final SplittableRandom random = new SplittableRandom(seed);
+        return previous -> previous + (long) (-Math.log(1.0 - random.nextDouble()) * meanInterval);
+    }
+
+    /**
+     * {@code burstSize} messages due at once, with the bursts spaced to keep the average rate.
+     */
+    static ArrivalSchedule bursty(double ratePerSecond, int burstSize) {
+        final long burstInterval = interval(ratePerSecond / burstSize);
+        return new ArrivalSchedule() {
+            private int dueInBurst;
+
+            @Override
+            public long next(long previous) {
+                if (dueInBurst == 0) {
+                    dueInBurst = burstSize;
+                    previous += burstInterval;
+                }
+                dueInBurst--;
+                return previous;
+            }
+        };
+    }
+
+    private static long interval(double ratePerSecond) {
+        return Math.max(1L, (long) (NANOS_PER_SECOND / requirePositive(ratePerSecond)));
+    }
+
+    private static double requirePositive(double ratePerSecond) {
+        if (!(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("Arrival rate must be positive: " + ratePerSecond);
+        }
+        return ratePerSecond;
+    }
+}
@@ -0,0 +1,18 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+/**
+ * Available {@link MessageBuffer} implementations, selectable by configuration.
+ */
+public enum BufferType {
+    SYNCHRONIZED, RING_SPIN, RING_YIELD, RING_PARK, RING_BLOCKING;
+
+    public <T> MessageBuffer<T> create(int capacity) {
+        return switch (this) {
+            case SYNCHRONIZED -> new SharedBuffer<>(capacity);
+            case RING_SPIN -> new RingBuffer<>(capacity, WaitStrategy.spin());
+            case RING_YIELD -> new RingBuffer<>(capacity, WaitStrategy.yielding());
+            case RING_PARK -> new RingBuffer<>(capacity, WaitStrategy.parking());
+            case RING_BLOCKING -> new RingBuffer<>(capacity, WaitStrategy.blocking());
+        };
+    }
+}
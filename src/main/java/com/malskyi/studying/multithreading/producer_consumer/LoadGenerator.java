@@ -0,0 +1,74 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+import com.malskyi.studying.multithreading.logging.Log;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Open-loop producer: sends messages when its {@link ArrivalSchedule} says they are due, not when the previous one
+ * was taken.
+ * <p>
+ * The schedule is laid out from the start of the load and never moves. When a full buffer holds a {@code put} up,
+ * the messages that fell due meanwhile are sent right after it, back to back, each still carrying the time it was due
+ * at; so the consumers see the load catching up instead of a producer that quietly slowed down, and latency measured
+ * from {@link Message#intendedAt()} is corrected for coordinated omission. How late the sends were is recorded as
+ * the send lag.
+ */
+final class LoadGenerator implements Runnable {
+    private final String name;
+    private final MessageBuffer<Message> buffer;
+    private final ArrivalSchedule schedule;
+    private final BooleanSupplier running;
+    private final LongAdder sent;
+    private final LatencyHistogram sendLag;
+
+    LoadGenerator(String name, MessageBuffer<Message> buffer, ArrivalSchedule schedule, BooleanSupplier running,
+                  LongAdder sent, LatencyHistogram sendLag) {
+        this.name = name;
+        this.buffer = buffer;
+        this.schedule = schedule;
+        this.running = running;
+        this.sent = sent;
+        this.sendLag = sendLag;
+    }
+
+    @Override
+    public void run() {
+        final long startedAt = System.nanoTime();
+        long offset = 0;
+        for (long sequence = 0; running.getAsBoolean(); sequence++) {
+            offset = schedule.next(offset);
+            final long intendedAt = startedAt + offset;
+            if (!awaitUntil(intendedAt)) {
+                return;
+            }
+            if (!running.getAsBoolean()) {
+                return;
+            }
+            final long sentAt = System.nanoTime();
+            final Message message = new Message("[" + name + "]Message #" + sequence, intendedAt, sentAt);
+            buffer.put(message);
+            sent.increment();
+            sendLag.record(sentAt - intendedAt);
+            Log.debug("[%s] Produced: %s%n", name, message.text());
+        }
+    }
+
+    /**
+     * Parks rather than sleeps, sleep granularity would shift every send by up to a millisecond.
+     *
+     * @return false if interrupted
+     */
+    private static boolean awaitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
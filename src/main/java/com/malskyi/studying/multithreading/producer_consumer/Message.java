@@ -0,0 +1,9 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+/**
+ * A produced message with the {@link System#nanoTime()} it was meant to be sent at and the one it was actually put
+ * into the buffer at. Latency measured from {@code intendedAt} includes the time the producer was held back by a full
+ * buffer, which latency measured from {@code sentAt} silently leaves out.
+ */
+record Message(String text, long intendedAt, long sentAt) {
+}
@@ -0,0 +1,16 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+/**
+ * Bounded hand-off between producers and consumers.
+ * Both operations block until they can complete; an interrupt while waiting is rethrown as a {@link RuntimeException}.
+ */
+public interface MessageBuffer<T> {
+    void put(T message);
+
+    T get();
+
+    /**
+     * Approximate amount of buffered messages, for monitoring.
+     */
+    int size();
+}
@@ -1,137 +1,239 @@
 package com.malskyi.studying.multithreading.producer_consumer;
 
+import com.malskyi.studying.multithreading.ExecutionMode;
+import com.malskyi.studying.multithreading.GracefulShutdown;
+import com.malskyi.studying.multithreading.PinningMonitor;
+import com.malskyi.studying.multithreading.RunControl;
+import com.malskyi.studying.multithreading.logging.Log;
+import com.malskyi.studying.multithreading.metrics.InstrumentedBuffer;
+
+import java.time.Duration;
 import java.time.Instant;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+/**
+ * Producers and consumers around a shared {@link MessageBuffer}.
+ * <p>
+ * A {@link LoadModel#CLOSED_LOOP} producer sleeps {@code PRODUCER_DELAY} after each {@code put}, so a full buffer
+ * lowers the load it offers and latency measured from the actual send hides the wait: coordinated omission. Its
+ * messages are still stamped with the time they were due at under the planned rate, one per delay. An
+ * {@link LoadModel#OPEN_LOOP} producer is a {@link LoadGenerator} following an {@link ArrivalPattern} at
+ * {@code ARRIVAL_RATE} messages per second, whatever the consumers do.
+ * Results (20 consumers at 600 ms, i.e. about 33 messages/s, buffer of 1, 20 s; p50 / p99):
+ *  CLOSED_LOOP, 20 ms delay (50/s planned): 32.4/s sent, latency from send 621 / 820 ms,
+ *                                           from intended send 3959 / 7322 ms
+ *  OPEN_LOOP, POISSON at 30/s: 30.7/s sent, latency from send 638 / 767 ms, from intended send 671 / 1107 ms
+ *  OPEN_LOOP, POISSON at 40/s: 32.3/s sent, latency from send 654 / 817 ms, from intended send 2752 / 4832 ms
+ *  Latency from send looks the same whether or not the consumers keep up.
+ */
 public class ProducerConsumerDemo {
+    private static final ExecutionMode EXECUTION_MODE = ExecutionMode.PLATFORM;
+    private static final BufferType BUFFER_TYPE = BufferType.SYNCHRONIZED;
     private static final int SHARED_BUFFER_CAPACITY = 1;
     private static final int PRODUCERS_COUNT = 1;
     private static final int CONSUMERS_COUNT = 20;
     private static final long PRODUCER_DELAY = 300L;
     private static final long CONSUMER_DELAY = 600L;
 
+    // e.g. LoadModel.OPEN_LOOP offers ARRIVAL_RATE messages per second following ARRIVAL_PATTERN, as in the results
+    private static final LoadModel LOAD_MODEL = LoadModel.CLOSED_LOOP;
+    private static final ArrivalPattern ARRIVAL_PATTERN = ArrivalPattern.POISSON;
+    private static final long ARRIVAL_RATE = 30L;
+    private static final long RAMP_SECONDS = 20L;
+
     private static final long EXECUTION_TIME_SECONDS = 60L;
+    private static final long DRAIN_TIMEOUT = 3000L;
+    private static final long ABORT_TIMEOUT = 500L;
+
+    private static final Message POISON_PILL = new Message("POISON_PILL", 0L, 0L);
+    private static final AtomicBoolean PRODUCING = new AtomicBoolean(true);
+
+    private enum LoadModel {CLOSED_LOOP, OPEN_LOOP}
 
     public static void main(String[] args) throws InterruptedException {
-        final AtomicInteger producerCallCount = new AtomicInteger(0);
+        run();
+    }
 
-        SharedBuffer sharedBuffer = new SharedBuffer(SHARED_BUFFER_CAPACITY);
+    public static void run() throws InterruptedException {
+        run(RunControl.standalone());
+    }
 
-        List<Thread> producers = Stream.generate(new ProducerSupplier(sharedBuffer, producerCallCount))
-                .limit(PRODUCERS_COUNT)
+    public static void run(RunControl control) throws InterruptedException {
+        final int bufferCapacity = (int) control.fixed("buffer.capacity", SHARED_BUFFER_CAPACITY);
+        final int producersCount = (int) control.fixed("producers", PRODUCERS_COUNT);
+        final int consumersCount = (int) control.fixed("consumers", CONSUMERS_COUNT);
+        final long executionSeconds = control.fixed("execution.seconds", EXECUTION_TIME_SECONDS);
+        final RunControl.Setting producerDelay = control.live("producer.delay", PRODUCER_DELAY);
+        final RunControl.Setting consumerDelay = control.live("consumer.delay", CONSUMER_DELAY);
+        final long arrivalRate = control.fixed("arrival.rate", ARRIVAL_RATE);
+        final long rampSeconds = control.fixed("ramp.seconds", RAMP_SECONDS);
+        final LongAdder producedCount = new LongAdder();
+        final LongAdder consumedCount = new LongAdder();
+        final LatencyHistogram sendLag = new LatencyHistogram();
+        final Latencies latencies = new Latencies(new LatencyHistogram(), new LatencyHistogram());
+        control.track("produced", producedCount::sum);
+        control.track("consumed", consumedCount::sum);
+        PRODUCING.set(true);
+
+        MessageBuffer<Message> sharedBuffer = new InstrumentedBuffer<>(BUFFER_TYPE.create(bufferCapacity), BUFFER_TYPE.name());
+        PinningMonitor pinningMonitor = EXECUTION_MODE.startPinningMonitor();
+
+        final ThreadFactory producerFactory = EXECUTION_MODE.threadFactory("Producer");
+        final Supplier<Thread> producerSupplier = switch (LOAD_MODEL) {
+            case CLOSED_LOOP -> new ProducerSupplier(sharedBuffer, producedCount, sendLag, producerDelay, producerFactory);
+            case OPEN_LOOP -> new LoadGeneratorSupplier(sharedBuffer, producedCount, sendLag,
+                    (double) arrivalRate / producersCount, TimeUnit.SECONDS.toNanos(rampSeconds), producerFactory);
+        };
+        List<Thread> producers = Stream.generate(producerSupplier)
+                .limit(producersCount)
                 .toList();
-        List<Thread> consumers = Stream.generate(new ConsumerSupplier(sharedBuffer))
-                .limit(CONSUMERS_COUNT)
+        List<Thread> consumers = Stream.generate(new ConsumerSupplier(sharedBuffer, consumedCount, latencies, consumerDelay, EXECUTION_MODE.threadFactory("Consumer")))
+                .limit(consumersCount)
                 .toList();
 
         producers.forEach(Thread::start);
         consumers.forEach(Thread::start);
 
-        Instant deadline = Instant.now().plusSeconds(EXECUTION_TIME_SECONDS);
-        while (Instant.now().isBefore(deadline)) {
-            Thread.sleep(1000L);
-        }
-
-        producers.forEach(Thread::interrupt);
-        consumers.forEach(Thread::interrupt);
-
-        System.out.println(producerCallCount);
-    }
-
-    private static class SharedBuffer {
-        private final Queue<String> queue = new LinkedList<>();
-        private final int capacity;
+        Instant startTime = Instant.now();
+        control.awaitStop(TimeUnit.SECONDS.toMillis(executionSeconds));
 
-        private SharedBuffer(int capacity) {
-            this.capacity = capacity;
+        System.out.println("Stopping producers...");
+        PRODUCING.set(false);
+        for (Thread producer : producers) {
+            producer.join(producerDelay.get() + ABORT_TIMEOUT);
         }
-
-        public synchronized void put(String message) {
-            while (queue.size() >= capacity) {
-                try {
-//                    Thread.sleep(100L);
-                    wait();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-            queue.add(message);
-            notify();
-//            notifyAll();
+        System.out.println("Draining buffer...");
+        for (int i = 0; i < consumersCount; i++) {
+            sharedBuffer.put(POISON_PILL);
         }
-
-        public synchronized String get() {
-            while (queue.isEmpty()) {
-                try {
-//                    Thread.sleep(100L);
-                    wait();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-            String polledData = queue.poll();
-            notify();
-//            notifyAll();
-            return polledData;
+        GracefulShutdown.awaitOrInterrupt(consumers, DRAIN_TIMEOUT, ABORT_TIMEOUT);
+
+        Log.flush();
+        System.out.printf("Produced %s, consumed %s, left unconsumed %s messages%n",
+                producedCount.sum(), consumedCount.sum(), producedCount.sum() - consumedCount.sum());
+        double seconds = Duration.between(startTime, Instant.now()).toMillis() / 1000.0;
+        System.out.printf("[%s] Consumed %s messages, %.1f messages/s%n", BUFFER_TYPE, consumedCount.sum(), consumedCount.sum() / seconds);
+        System.out.printf("[%s] %s, %.1f messages/s sent%n", LOAD_MODEL,
+                LOAD_MODEL == LoadModel.OPEN_LOOP ? ARRIVAL_PATTERN + " at " + arrivalRate + "/s" : producerDelay.get() + " ms delay",
+                producedCount.sum() / seconds);
+        System.out.println("\tSend lag: " + sendLag.summary());
+        System.out.println("\tLatency from send: " + latencies.fromSend().summary());
+        System.out.println("\tLatency from intended send: " + latencies.fromIntendedSend().summary());
+        if (pinningMonitor != null) {
+            pinningMonitor.close();
         }
     }
 
-    private record Producer(String producerName, SharedBuffer sharedBuffer,
-                            AtomicInteger producerCallCount) implements Runnable {
+    /**
+     * Closed-loop producer. The time a message was due at is the planned one, one delay after the previous due time,
+     * so the time it spent blocked on a full buffer shows up in the corrected latency.
+     */
+    private record Producer(String producerName, MessageBuffer<Message> sharedBuffer, LongAdder producedCount,
+                            LatencyHistogram sendLag, RunControl.Setting delay) implements Runnable {
         private static final AtomicInteger COUNTER = new AtomicInteger();
 
         @Override
         public void run() {
-            while (true) {
-                producerCallCount.incrementAndGet();
-                String message = String.format("[%s]Message #%s", producerName, COUNTER.getAndIncrement());
+            long intendedAt = System.nanoTime();
+            while (PRODUCING.get()) {
+                final long sentAt = System.nanoTime();
+                Message message = new Message("[" + producerName + "]Message #" + COUNTER.getAndIncrement(), intendedAt, sentAt);
                 sharedBuffer.put(message);
-                System.out.printf("[%s] Produced: %s%n", producerName, message);
+                producedCount.increment();
+                sendLag.record(sentAt - intendedAt);
+                Log.debug("[%s] Produced: %s%n", producerName, message.text());
+                intendedAt += TimeUnit.MILLISECONDS.toNanos(delay.get());
                 try {
-                    Thread.sleep(PRODUCER_DELAY);
+                    Thread.sleep(delay.get());
                 } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+                    break;
                 }
             }
         }
     }
 
-    private record Consumer(String consumerName, SharedBuffer sharedBuffer) implements Runnable {
+    private record Consumer(String consumerName, MessageBuffer<Message> sharedBuffer,
+                            LongAdder consumedCount, Latencies latencies, RunControl.Setting delay) implements Runnable {
         @Override
         public void run() {
             while (true) {
-                String message = sharedBuffer.get();
+                Message message = sharedBuffer.get();
+                if (message == POISON_PILL) {
+                    return;
+                }
                 try {
-                    Thread.sleep(CONSUMER_DELAY);
+                    Thread.sleep(delay.get());
                 } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+                    Log.info("[%s] Interrupted, left unconsumed: %s%n", consumerName, message.text());
+                    return;
                 }
-                System.out.printf("[%s] Consumed: %s%n", consumerName, message);
+                latencies.record(message, System.nanoTime());
+                consumedCount.increment();
+                Log.debug("[%s] Consumed: %s%n", consumerName, message.text());
             }
         }
     }
 
-    private record ProducerSupplier(SharedBuffer sharedBuffer,
-                                    AtomicInteger producerCallCount) implements Supplier<Thread> {
+    /**
+     * Time from a message being sent, and from it being due, to it being consumed. Only the second one counts the
+     * time a producer could not send.
+     */
+    private record Latencies(LatencyHistogram fromSend, LatencyHistogram fromIntendedSend) {
+        void record(Message message, long consumedAt) {
+            fromSend.record(consumedAt - message.sentAt());
+            fromIntendedSend.record(consumedAt - message.intendedAt());
+        }
+    }
+
+    private record ProducerSupplier(MessageBuffer<Message> sharedBuffer,
+                                    LongAdder producedCount,
+                                    LatencyHistogram sendLag,
+                                    RunControl.Setting delay,
+                                    ThreadFactory threadFactory) implements Supplier<Thread> {
+        private static int idCounter = 1; // Counter to generate unique IDs
+
+        @Override
+        public Thread get() {
+            return threadFactory.newThread(new Producer("Producer-" + idCounter++, sharedBuffer, producedCount, sendLag, delay));
+        }
+    }
+
+    /**
+     * Every generator gets its own schedule at its share of the rate, seeded by its id.
+     */
+    private record LoadGeneratorSupplier(MessageBuffer<Message> sharedBuffer,
+                                         LongAdder producedCount,
+                                         LatencyHistogram sendLag,
+                                         double ratePerSecond,
+                                         long rampNanos,
+                                         ThreadFactory threadFactory) implements Supplier<Thread> {
         private static int idCounter = 1; // Counter to generate unique IDs
 
         @Override
         public Thread get() {
-            return new Thread(new Producer("Producer-" + idCounter++, sharedBuffer, producerCallCount));
+            final int id = idCounter++;
+            final ArrivalSchedule schedule = ARRIVAL_PATTERN.schedule(ratePerSecond, rampNanos, id);
+            return threadFactory.newThread(new LoadGenerator("Producer-" + id, sharedBuffer, schedule, PRODUCING::get, producedCount, sendLag));
         }
     }
 
-    private record ConsumerSupplier(SharedBuffer sharedBuffer) implements Supplier<Thread> {
+    private record ConsumerSupplier(MessageBuffer<Message> sharedBuffer,
+                                    LongAdder consumedCount,
+                                    Latencies latencies,
+                                    RunControl.Setting delay,
+                                    ThreadFactory threadFactory) implements Supplier<Thread> {
         private static int idCounter = 1; // Counter to generate unique IDs
 
         @Override
         public Thread get() {
-            return new Thread(new Consumer("Consumer-" + idCounter++, sharedBuffer));
+            return threadFactory.newThread(new Consumer("Consumer-" + idCounter++, sharedBuffer, consumedCount, latencies, delay));
         }
     }
 }
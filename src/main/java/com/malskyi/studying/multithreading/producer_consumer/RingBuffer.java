@@ -0,0 +1,103 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free bounded multi-producer/multi-consumer ring.
+ * Slots are preallocated; every slot carries its own sequence that tells whether it is free for the producer
+ * claiming position {@code n} ({@code sequence == n}) or holds a message for the consumer claiming it
+ * ({@code sequence == n + 1}). Producers and consumers only contend on their own padded cursor.
+ */
+public final class RingBuffer<T> implements MessageBuffer<T> {
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final Sequence producerCursor = new Sequence(0);
+    private final Sequence consumerCursor = new Sequence(0);
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * @param capacity rounded up to the next power of two, at least 2
+     */
+    public RingBuffer(int capacity, WaitStrategy waitStrategy) {
+        int size = Math.max(2, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public boolean offer(T message) {
+        Objects.requireNonNull(message);
+        long position = producerCursor.get();
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.getAcquire(index) - position;
+            if (difference == 0) {
+                if (producerCursor.compareAndSet(position, position + 1)) {
+                    slots[index] = message;
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = producerCursor.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = producerCursor.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = consumerCursor.get();
+        while (true) {
+            final int index = (int) (position & mask);
+            final long difference = sequences.getAcquire(index) - (position + 1);
+            if (difference == 0) {
+                if (consumerCursor.compareAndSet(position, position + 1)) {
+                    final T message = (T) slots[index];
+                    slots[index] = null;
+                    sequences.setRelease(index, position + slots.length);
+                    return message;
+                }
+                position = consumerCursor.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = consumerCursor.get();
+            }
+        }
+    }
+
+    @Override
+    public void put(T message) {
+        for (int attempt = 0; !offer(message); attempt++) {
+            waitStrategy.idle(attempt);
+        }
+        waitStrategy.signal();
+    }
+
+    @Override
+    public T get() {
+        T message;
+        for (int attempt = 0; (message = poll()) == null; attempt++) {
+            waitStrategy.idle(attempt);
+        }
+        waitStrategy.signal();
+        return message;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.max(0, producerCursor.get() - consumerCursor.get());
+    }
+}
@@ -0,0 +1,47 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+class SharedBuffer<T> implements MessageBuffer<T> {
+    private final Queue<T> queue = new LinkedList<>();
+    private final int capacity;
+
+    SharedBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized void put(T message) {
+        while (queue.size() >= capacity) {
+            try {
+//                Thread.sleep(100L);
+                wait();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        queue.add(message);
+        notifyAll();
+    }
+
+    @Override
+    public synchronized T get() {
+        while (queue.isEmpty()) {
+            try {
+//                Thread.sleep(100L);
+                wait();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        T polledData = queue.poll();
+        notifyAll();
+        return polledData;
+    }
+
+    @Override
+    public synchronized int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,118 @@
+package com.malskyi.studying.multithreading.producer_consumer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides what a {@link RingBuffer} producer or consumer does while the ring is full or empty.
+ */
+public interface WaitStrategy {
+    long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    long BLOCKING_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Called after the {@code attempt}-th unsuccessful try to put or get a message.
+     */
+    void idle(int attempt);
+
+    /**
+     * Called after a message was put or taken, so that waiting threads may retry.
+     */
+    void signal();
+
+    static WaitStrategy spin() {
+        return new WaitStrategy() {
+            @Override
+            public void idle(int attempt) {
+                checkInterrupted();
+                Thread.onSpinWait();
+            }
+
+            @Override
+            public void signal() {
+            }
+        };
+    }
+
+    static WaitStrategy yielding() {
+        return new WaitStrategy() {
+            @Override
+            public void idle(int attempt) {
+                checkInterrupted();
+                if (attempt < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+
+            @Override
+            public void signal() {
+            }
+        };
+    }
+
+    static WaitStrategy parking() {
+        return new WaitStrategy() {
+            @Override
+            public void idle(int attempt) {
+                checkInterrupted();
+                if (attempt < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+
+            @Override
+            public void signal() {
+            }
+        };
+    }
+
+    /**
+     * Sleeps on a condition until signalled. The wait is bounded by {@link #BLOCKING_TIMEOUT_NANOS},
+     * so a signal racing with a thread that is about to wait costs at most one timeout instead of a lost wake-up.
+     */
+    static WaitStrategy blocking() {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition changed = lock.newCondition();
+        final AtomicInteger waiters = new AtomicInteger();
+        return new WaitStrategy() {
+            @Override
+            public void idle(int attempt) {
+                lock.lock();
+                waiters.incrementAndGet();
+                try {
+                    changed.awaitNanos(BLOCKING_TIMEOUT_NANOS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    waiters.decrementAndGet();
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void signal() {
+                if (waiters.get() > 0) {
+                    lock.lock();
+                    try {
+                        changed.signalAll();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        };
+    }
+
+    private static void checkInterrupted() {
+        if (Thread.interrupted()) {
+            throw new RuntimeException(new InterruptedException());
+        }
+    }
+}
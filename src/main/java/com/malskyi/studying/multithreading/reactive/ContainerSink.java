@@ -0,0 +1,55 @@
+package com.malskyi.studying.multithreading.reactive;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * End of a reactive assembly line: requests a batch of deployed containers at a time and completes {@link #done()}
+ * once the line has drained.
+ */
+final class ContainerSink implements Flow.Subscriber<Container> {
+    private final int batchSize;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    private int received;
+
+    ContainerSink(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    CompletableFuture<Void> done() {
+        return done;
+    }
+
+    void cancel() {
+        subscription.cancel();
+        done.cancel(false);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public void onNext(Container container) {
+        // ask for the next batch once this one is in, deployed containers are already counted by the deploy stage
+        if (++received == batchSize) {
+            received = 0;
+            subscription.request(batchSize);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        done.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        done.complete(null);
+    }
+}
@@ -0,0 +1,82 @@
+package com.malskyi.studying.multithreading.reactive;
+
+import com.malskyi.studying.multithreading.Container;
+
+import java.util.Queue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Emits a new container every interval while there is demand for it, until stopped.
+ * Emission runs as a periodic task on the shared scheduler, so no thread waits for demand.
+ */
+final class ContainerSource implements Flow.Publisher<Container> {
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicInteger counter;
+    private final Queue<Container> createdContainers;
+
+    private final AtomicLong demand = new AtomicLong();
+    private volatile boolean stopped;
+    private volatile boolean cancelled;
+    private Flow.Subscriber<? super Container> subscriber;
+    private ScheduledFuture<?> ticker;
+
+    ContainerSource(long intervalMillis, ScheduledExecutorService scheduler, AtomicInteger counter, Queue<Container> createdContainers) {
+        this.intervalMillis = intervalMillis;
+        this.scheduler = scheduler;
+        this.counter = counter;
+        this.createdContainers = createdContainers;
+    }
+
+    @Override
+    public synchronized void subscribe(Flow.Subscriber<? super Container> subscriber) {
+        if (this.subscriber != null) {
+            throw new IllegalStateException("ContainerSource supports a single subscriber");
+        }
+        this.subscriber = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                demand.getAndAccumulate(n, Demand::add);
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+        });
+        ticker = scheduler.scheduleAtFixedRate(this::tick, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the intake: the subscriber gets onComplete on the next tick.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    // runs on the scheduler, one tick at a time
+    private void tick() {
+        if (cancelled || stopped) {
+            ticker.cancel(false);
+            if (!cancelled) {
+                subscriber.onComplete();
+            }
+            return;
+        }
+        if (demand.get() == 0) {
+            return;
+        }
+        if (demand.get() != Long.MAX_VALUE) {
+            demand.decrementAndGet();
+        }
+        final Container container = new Container(counter.getAndIncrement());
+        createdContainers.add(container);
+        subscriber.onNext(container);
+    }
+}
@@ -0,0 +1,18 @@
+package com.malskyi.studying.multithreading.reactive;
+
+/**
+ * Flow demand arithmetic: requests add up, capped at {@link Long#MAX_VALUE} meaning unbounded.
+ */
+final class Demand {
+
+    private Demand() {
+    }
+
+    static long add(long current, long requested) {
+        if (requested <= 0) {
+            throw new IllegalArgumentException("Requested " + requested + ", must be positive");
+        }
+        final long sum = current + requested;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
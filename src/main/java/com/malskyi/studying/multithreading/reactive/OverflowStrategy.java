@@ -0,0 +1,28 @@
+package com.malskyi.studying.multithreading.reactive;
+
+/**
+ * What a {@link StageProcessor} does when a container arrives while its buffer is full.
+ */
+public enum OverflowStrategy {
+    /**
+     * Requests only as many containers from upstream as the buffer holds, so upstream slows down to the stage's pace
+     * and nothing is lost. A full buffer can then only mean a broken upstream, which fails the pipeline.
+     */
+    BUFFER,
+    /**
+     * Requests everything upstream can emit and drops the arriving container when the buffer is full.
+     */
+    DROP,
+    /**
+     * Requests everything upstream can emit and drops the oldest buffered container to make room for the arriving one.
+     */
+    LATEST,
+    /**
+     * Requests everything upstream can emit and fails the pipeline when the buffer is full.
+     */
+    ERROR;
+
+    long initialRequest(int bufferCapacity) {
+        return this == BUFFER ? bufferCapacity : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,127 @@
+package com.malskyi.studying.multithreading.reactive;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerStatus;
+import com.malskyi.studying.multithreading.ExecutionMode;
+import com.malskyi.studying.multithreading.RunControl;
+import com.malskyi.studying.multithreading.ShutdownReport;
+import com.malskyi.studying.multithreading.StatusCounters;
+import com.malskyi.studying.multithreading.logging.Log;
+import com.malskyi.studying.multithreading.metrics.StageMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The assembly line on {@link java.util.concurrent.Flow}: every stage is a {@link StageProcessor} that asks upstream
+ * only for what it can take, and nothing ever waits on a queue. That lets PIPELINES_COUNT independent lines share
+ * SCHEDULER_THREADS threads.
+ * <p>
+ * Results (4 lines, 2 threads, BUFFER of 8):
+ *  Initialized: 252 containers
+ *  Built: 252 containers
+ *  Deployed: 252 containers
+ */
+public class ReactiveDemo {
+    private static final int PIPELINES_COUNT = 4;
+    private static final int SCHEDULER_THREADS = 2;
+
+    private static final long INTAKE_INTERVAL = 50L;
+    private static final long INIT_DELAY = 100L;
+    private static final long BUILD_DELAY = 300L;
+    private static final long DEPLOY_DELAY = 600L;
+
+    private static final int INIT_CONCURRENCY = 1;
+    private static final int BUILD_CONCURRENCY = 3;
+    private static final int DEPLOY_CONCURRENCY = 6;
+
+    private static final int BUFFER_CAPACITY = 8;
+    private static final OverflowStrategy OVERFLOW_STRATEGY = OverflowStrategy.BUFFER;
+
+    private static final long EXECUTION_TIME_SECONDS = 6L;
+    private static final long DRAIN_TIMEOUT = 5000L;
+
+    private static final AtomicInteger COUNTER = new AtomicInteger(1);
+
+    public static void main(String[] args) throws InterruptedException {
+        run();
+        System.exit(0);
+    }
+
+    public static void run() throws InterruptedException {
+        run(RunControl.standalone());
+    }
+
+    public static void run(RunControl control) throws InterruptedException {
+        final long executionSeconds = control.fixed("execution.seconds", EXECUTION_TIME_SECONDS);
+        final RunControl.Setting initDelay = control.live("init.delay", INIT_DELAY);
+        final RunControl.Setting buildDelay = control.live("build.delay", BUILD_DELAY);
+        final RunControl.Setting deployDelay = control.live("deploy.delay", DEPLOY_DELAY);
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(SCHEDULER_THREADS,
+                ExecutionMode.PLATFORM.threadFactory("Reactive"));
+        final Queue<Container> createdContainers = new ConcurrentLinkedQueue<>();
+        final StatusCounters counters = new StatusCounters();
+        control.track(counters);
+        final StageMetrics initMetrics = StageMetrics.of("ReactiveDemo", "init");
+        final StageMetrics buildMetrics = StageMetrics.of("ReactiveDemo", "build");
+        final StageMetrics deployMetrics = StageMetrics.of("ReactiveDemo", "deploy");
+
+        final List<ContainerSource> sources = new ArrayList<>();
+        final List<StageProcessor> stages = new ArrayList<>();
+        final List<ContainerSink> sinks = new ArrayList<>();
+        for (int line = 1; line <= PIPELINES_COUNT; line++) {
+            final ContainerSource source = new ContainerSource(INTAKE_INTERVAL, scheduler, COUNTER, createdContainers);
+            final StageProcessor init = new StageProcessor("InitWorker-" + line, ContainerStatus.INITIALIZED, initDelay,
+                    INIT_CONCURRENCY, BUFFER_CAPACITY, OVERFLOW_STRATEGY, scheduler, counters, initMetrics);
+            final StageProcessor build = new StageProcessor("BuildWorker-" + line, ContainerStatus.BUILT, buildDelay,
+                    BUILD_CONCURRENCY, BUFFER_CAPACITY, OVERFLOW_STRATEGY, scheduler, counters, buildMetrics);
+            final StageProcessor deploy = new StageProcessor("DeployWorker-" + line, ContainerStatus.DEPLOYED, deployDelay,
+                    DEPLOY_CONCURRENCY, BUFFER_CAPACITY, OVERFLOW_STRATEGY, scheduler, counters, deployMetrics);
+            final ContainerSink sink = new ContainerSink(BUFFER_CAPACITY);
+            deploy.subscribe(sink);
+            build.subscribe(deploy);
+            init.subscribe(build);
+            source.subscribe(init);
+            sources.add(source);
+            stages.addAll(List.of(init, build, deploy));
+            sinks.add(sink);
+        }
+
+        System.out.println("Running " + PIPELINES_COUNT + " reactive lines on " + SCHEDULER_THREADS + " threads...");
+        control.awaitStop(TimeUnit.SECONDS.toMillis(executionSeconds));
+
+        System.out.println("Stopping intake, draining in-flight containers...");
+        sources.forEach(ContainerSource::stop);
+        final CompletableFuture<Void> drained = CompletableFuture.allOf(sinks.stream()
+                .map(ContainerSink::done)
+                .toArray(CompletableFuture[]::new));
+        try {
+            drained.get(DRAIN_TIMEOUT, TimeUnit.MILLISECONDS);
+            System.out.println("All lines drained!");
+        } catch (TimeoutException e) {
+            System.out.println("Drain deadline exceeded, cancelling remaining lines...");
+            sinks.forEach(ContainerSink::cancel);
+        } catch (ExecutionException e) {
+            System.out.println("Line failed: " + e.getCause().getMessage());
+        }
+        scheduler.shutdownNow();
+
+        Log.flush();
+        counters.print();
+        for (StageProcessor stage : stages) {
+            if (stage.dropped() > 0) {
+                System.out.println("\t" + stage.name() + " dropped " + stage.dropped() + " containers");
+            }
+        }
+        ShutdownReport.print(createdContainers);
+    }
+}
@@ -0,0 +1,223 @@
+package com.malskyi.studying.multithreading.reactive;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.ContainerStatus;
+import com.malskyi.studying.multithreading.RunControl;
+import com.malskyi.studying.multithreading.StatusCounters;
+import com.malskyi.studying.multithreading.logging.Log;
+import com.malskyi.studying.multithreading.metrics.StageMetrics;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One assembly line stage as a {@link Flow.Processor}: buffers containers from upstream, moves each of them to
+ * {@code status} after the current {@code delay} and passes them on.
+ * <p>
+ * A stage never blocks. Its work is a task scheduled on the shared scheduler for when the delay is over, and it starts
+ * at most {@code concurrency} containers and only as many as downstream has requested. All signals end in
+ * {@link #drain()}, which is entered by one thread at a time and serializes what goes downstream.
+ */
+final class StageProcessor implements Flow.Processor<Container, Container> {
+    private final String name;
+    private final ContainerStatus status;
+    private final RunControl.Setting delay;
+    private final int concurrency;
+    private final int bufferCapacity;
+    private final OverflowStrategy overflow;
+    private final ScheduledExecutorService scheduler;
+    private final StatusCounters counters;
+    private final StageMetrics metrics;
+
+    private final Queue<Container> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final Queue<Container> processed = new ConcurrentLinkedQueue<>();
+    // started and not passed downstream yet
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super Container> downstream;
+    private volatile boolean upstreamDone;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    private boolean terminated;
+
+    StageProcessor(String name, ContainerStatus status, RunControl.Setting delay, int concurrency, int bufferCapacity,
+                   OverflowStrategy overflow, ScheduledExecutorService scheduler, StatusCounters counters, StageMetrics metrics) {
+        if (concurrency < 1 || bufferCapacity < 1) {
+            throw new IllegalArgumentException(String.format("Invalid stage %s: concurrency %s, buffer %s", name, concurrency, bufferCapacity));
+        }
+        this.name = name;
+        this.status = status;
+        this.delay = delay;
+        this.concurrency = concurrency;
+        this.bufferCapacity = bufferCapacity;
+        this.overflow = overflow;
+        this.scheduler = scheduler;
+        this.counters = counters;
+        this.metrics = metrics;
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    String name() {
+        return name;
+    }
+
+    @Override
+    public synchronized void subscribe(Flow.Subscriber<? super Container> subscriber) {
+        if (downstream != null) {
+            throw new IllegalStateException(name + " supports a single subscriber");
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                demand.getAndAccumulate(n, Demand::add);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                if (upstream != null) {
+                    upstream.cancel();
+                }
+            }
+        });
+        downstream = subscriber;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        upstream = subscription;
+        subscription.request(overflow.initialRequest(bufferCapacity));
+    }
+
+    @Override
+    public void onNext(Container container) {
+        if (buffered.incrementAndGet() <= bufferCapacity) {
+            buffer.offer(container);
+        } else {
+            buffered.decrementAndGet();
+            overflow(container);
+        }
+        drain();
+    }
+
+    private void overflow(Container container) {
+        switch (overflow) {
+            case DROP -> {
+                dropped.increment();
+                Log.debug("[%s] Buffer full, dropped %s%n", name, container.getName());
+            }
+            case LATEST -> {
+                final Container oldest = buffer.poll();
+                if (oldest == null) {
+                    // drained meanwhile, there is room now
+                    buffered.incrementAndGet();
+                } else {
+                    dropped.increment();
+                    Log.debug("[%s] Buffer full, dropped %s for %s%n", name, oldest.getName(), container.getName());
+                }
+                buffer.offer(container);
+            }
+            case BUFFER, ERROR -> {
+                error = new IllegalStateException(String.format("[%s] Buffer of %s overflowed by %s", name, bufferCapacity, container.getName()));
+                upstream.cancel();
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            final Flow.Subscriber<? super Container> subscriber = downstream;
+            if (subscriber != null && !terminated) {
+                emit(subscriber);
+                startWork();
+                if (error != null) {
+                    terminated = true;
+                    subscriber.onError(error);
+                } else if (upstreamDone && buffered.get() == 0 && outstanding.get() == 0) {
+                    terminated = true;
+                    subscriber.onComplete();
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void emit(Flow.Subscriber<? super Container> subscriber) {
+        while (demand.get() > 0 && !cancelled) {
+            final Container container = processed.poll();
+            if (container == null) {
+                return;
+            }
+            if (demand.get() != Long.MAX_VALUE) {
+                demand.decrementAndGet();
+            }
+            outstanding.decrementAndGet();
+            subscriber.onNext(container);
+        }
+    }
+
+    private void startWork() {
+        while (!cancelled && outstanding.get() < Math.min(concurrency, demand.get())) {
+            final Container container = buffer.poll();
+            if (container == null) {
+                return;
+            }
+            buffered.decrementAndGet();
+            outstanding.incrementAndGet();
+            if (overflow == OverflowStrategy.BUFFER) {
+                upstream.request(1);
+            }
+            Log.debug("[%s] Processing %s...%n", name, container.getName());
+            final long startedAt = System.nanoTime();
+            scheduler.schedule(() -> complete(container, startedAt), delay.get(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void complete(Container container, long startedAt) {
+        final String attribution = "[" + Thread.currentThread().getName() + "] " + name + " ";
+        switch (status) {
+            case INITIALIZED -> container.setInitializedBy(attribution);
+            case BUILT -> container.setBuildBy(attribution);
+            case DEPLOYED -> container.setDeployedBy(attribution);
+            default -> {
+            }
+        }
+        container.setContainerStatus(status);
+        metrics.recordService(System.nanoTime() - startedAt);
+        counters.record(status, container);
+        processed.offer(container);
+        drain();
+    }
+}
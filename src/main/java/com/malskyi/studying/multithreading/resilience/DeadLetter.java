@@ -0,0 +1,9 @@
+package com.malskyi.studying.multithreading.resilience;
+
+import com.malskyi.studying.multithreading.Container;
+
+/**
+ * A container a stage gave up on, left in the status of the stage before.
+ */
+public record DeadLetter(Container container, String stage, int attempts, Throwable cause) {
+}
@@ -0,0 +1,38 @@
+package com.malskyi.studying.multithreading.resilience;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulates a misbehaving stage: before the real work, a container fails with probability {@code failureRate} or
+ * takes {@code slowMillis} longer with probability {@code slowRate}.
+ */
+public record FaultInjector(double failureRate, double slowRate, long slowMillis) {
+    public static final FaultInjector NONE = new FaultInjector(0.0, 0.0, 0L);
+
+    public FaultInjector {
+        if (failureRate < 0 || failureRate > 1 || slowRate < 0 || slowRate > 1 || slowMillis < 0) {
+            throw new IllegalArgumentException(String.format("Invalid faults: failure rate %s, slow rate %s, slow %s ms", failureRate, slowRate, slowMillis));
+        }
+    }
+
+    void inject(String stage) throws InterruptedException {
+        if (this == NONE) {
+            return;
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < failureRate) {
+            throw new InjectedFaultException(stage);
+        }
+        if (random.nextDouble() < slowRate) {
+            Thread.sleep(slowMillis);
+        }
+    }
+
+    static final class InjectedFaultException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        InjectedFaultException(String stage) {
+            super("Injected failure in " + stage);
+        }
+    }
+}
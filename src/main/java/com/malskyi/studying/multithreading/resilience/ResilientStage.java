@@ -0,0 +1,186 @@
+package com.malskyi.studying.multithreading.resilience;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.logging.Log;
+
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs a stage's work on a container under a {@link StagePolicy}, on the calling thread.
+ * <p>
+ * An attempt that takes longer than the timeout is interrupted by a watchdog thread and counts as failed, like an
+ * exception does. Failed attempts are retried after a jittered backoff until the policy runs out of attempts, then the
+ * container goes to the dead-letter queue. While the circuit breaker is open, containers go there without an attempt.
+ * A real interrupt of the worker is never swallowed: it ends {@link #execute} with an {@link InterruptedException}.
+ */
+public final class ResilientStage {
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "StageWatchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final StagePolicy policy;
+    private final LongSupplier timeoutMillis;
+    private final FaultInjector faults;
+    private final CircuitBreaker circuitBreaker;
+    private final Queue<DeadLetter> deadLetters;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder dead = new LongAdder();
+
+    public ResilientStage(String name, StagePolicy policy, FaultInjector faults, Queue<DeadLetter> deadLetters) {
+        this(name, policy, faults, deadLetters, policy::timeoutMillis);
+    }
+
+    /**
+     * @param timeoutMillis read before every attempt instead of the policy's timeout, so it can follow a live stage
+     *                      delay; 0 for no timeout
+     */
+    public ResilientStage(String name, StagePolicy policy, FaultInjector faults, Queue<DeadLetter> deadLetters,
+                          LongSupplier timeoutMillis) {
+        this.name = name;
+        this.policy = policy;
+        this.timeoutMillis = timeoutMillis;
+        this.faults = faults;
+        this.circuitBreaker = policy.circuitBreaker();
+        this.deadLetters = deadLetters;
+    }
+
+    /**
+     * @return true once the work succeeded, false if the container went to the dead-letter queue
+     */
+    public boolean execute(Container container, StageWork work) throws InterruptedException {
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            shed.increment();
+            deadLetter(container, 0, new IllegalStateException("Circuit breaker of " + name + " is open"));
+            return false;
+        }
+        Exception failure = null;
+        int attempt = 0;
+        while (++attempt <= policy.maxAttempts()) {
+            if (attempt > 1) {
+                retries.increment();
+                Log.debug("[%s] Retrying %s, attempt %s%n", name, container.getName(), attempt);
+                TimeUnit.NANOSECONDS.sleep(policy.backoffNanos(attempt - 1));
+            }
+            try {
+                attempt(container, work);
+                if (circuitBreaker != null) {
+                    circuitBreaker.onSuccess();
+                }
+                return true;
+            } catch (InterruptedException e) {
+                if (circuitBreaker != null) {
+                    circuitBreaker.onAbandoned();
+                }
+                throw e;
+            } catch (Exception e) {
+                failure = e;
+                if (circuitBreaker != null) {
+                    circuitBreaker.onFailure();
+                    if (circuitBreaker.state() == CircuitBreaker.State.OPEN) {
+                        Log.info("[%s] Circuit breaker open after %s failed%n", name, container.getName());
+                        break;
+                    }
+                }
+            }
+        }
+        deadLetter(container, Math.min(attempt, policy.maxAttempts()), failure);
+        return false;
+    }
+
+    private void attempt(Container container, StageWork work) throws Exception {
+        final long timeoutMillis = this.timeoutMillis.getAsLong();
+        if (timeoutMillis == 0) {
+            faults.inject(name);
+            work.run(container);
+            return;
+        }
+        final Timeout timeout = new Timeout(Thread.currentThread());
+        final ScheduledFuture<?> watchdog = WATCHDOG.schedule(timeout, timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            faults.inject(name);
+            work.run(container);
+        } catch (InterruptedException e) {
+            if (!timeout.expired()) {
+                throw e;
+            }
+        } finally {
+            watchdog.cancel(false);
+        }
+        if (!timeout.finish()) {
+            timeouts.increment();
+            throw new TimeoutException(String.format("%s took over %s ms in %s", container.getName(), timeoutMillis, name));
+        }
+    }
+
+    private void deadLetter(Container container, int attempts, Throwable cause) {
+        dead.increment();
+        Log.info("[%s] Gave up on %s: %s%n", name, container.getName(), cause);
+        deadLetters.add(new DeadLetter(container, name, attempts, cause));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String summary() {
+        return String.format("%s: %s retries, %s timeouts, %s shed, %s dead letters", name, retries.sum(), timeouts.sum(), shed.sum(), dead.sum());
+    }
+
+    /**
+     * Interrupts the attempt's thread unless it finished first. The interrupt is owned by the timeout: the worker
+     * waits for it to be delivered and clears it, so it can't leak into the worker's next blocking call.
+     */
+    private static final class Timeout implements Runnable {
+        private static final int RUNNING = 0;
+        private static final int FINISHED = 1;
+        private static final int EXPIRING = 2;
+        private static final int EXPIRED = 3;
+
+        private final Thread thread;
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+        private Timeout(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void run() {
+            if (state.compareAndSet(RUNNING, EXPIRING)) {
+                thread.interrupt();
+                state.set(EXPIRED);
+            }
+        }
+
+        private boolean expired() {
+            return state.get() != RUNNING;
+        }
+
+        /**
+         * @return true if the attempt finished in time, false if it timed out
+         */
+        private boolean finish() {
+            if (state.compareAndSet(RUNNING, FINISHED)) {
+                return true;
+            }
+            while (state.get() != EXPIRED) {
+                Thread.onSpinWait();
+            }
+            Thread.interrupted();
+            return false;
+        }
+    }
+}
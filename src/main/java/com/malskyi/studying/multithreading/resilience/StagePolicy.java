@@ -0,0 +1,43 @@
+package com.malskyi.studying.multithreading.resilience;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a stage deals with a container that fails or takes too long.
+ *
+ * @param timeoutMillis     time one attempt may take before it is interrupted, 0 for no timeout
+ * @param maxAttempts       attempts per container before it goes to the dead-letter queue
+ * @param backoffMillis     backoff before the first retry, doubled for every next one
+ * @param maxBackoffMillis  upper bound of the backoff
+ * @param breakerWindow     outcomes the circuit breaker looks at, 0 for no circuit breaker
+ * @param breakerThreshold  failure rate over the window that opens the breaker
+ * @param breakerOpenMillis how long an open breaker sheds containers before letting a trial through
+ */
+public record StagePolicy(long timeoutMillis, int maxAttempts, long backoffMillis, long maxBackoffMillis,
+                          int breakerWindow, double breakerThreshold, long breakerOpenMillis) {
+    public static final StagePolicy NONE = new StagePolicy(0L, 1, 0L, 0L, 0, 1.0, 0L);
+
+    public StagePolicy {
+        if (timeoutMillis < 0 || maxAttempts < 1 || backoffMillis < 0 || maxBackoffMillis < backoffMillis
+                || breakerWindow < 0 || breakerThreshold <= 0 || breakerThreshold > 1 || breakerOpenMillis < 0) {
+            throw new IllegalArgumentException(String.format("Invalid stage policy: timeout %s ms, %s attempts, backoff %s-%s ms, breaker %s/%s/%s ms",
+                    timeoutMillis, maxAttempts, backoffMillis, maxBackoffMillis, breakerWindow, breakerThreshold, breakerOpenMillis));
+        }
+    }
+
+    /**
+     * Full jitter: a random pause up to the exponential backoff, so containers failing together don't retry together.
+     */
+    long backoffNanos(int attempt) {
+        if (backoffMillis == 0) {
+            return 0;
+        }
+        final long ceiling = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 30));
+        return TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    CircuitBreaker circuitBreaker() {
+        return breakerWindow == 0 ? null : new CircuitBreaker(breakerWindow, breakerThreshold, breakerOpenMillis);
+    }
+}
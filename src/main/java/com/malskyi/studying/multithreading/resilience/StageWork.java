@@ -0,0 +1,11 @@
+package com.malskyi.studying.multithreading.resilience;
+
+import com.malskyi.studying.multithreading.Container;
+
+/**
+ * The work one stage does on one container.
+ */
+@FunctionalInterface
+public interface StageWork {
+    void run(Container container) throws Exception;
+}
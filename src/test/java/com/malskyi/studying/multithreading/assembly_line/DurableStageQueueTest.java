@@ -0,0 +1,62 @@
+package com.malskyi.studying.multithreading.assembly_line;
+
+import com.malskyi.studying.multithreading.Container;
+import com.malskyi.studying.multithreading.durable.FsyncPolicy;
+import com.malskyi.studying.multithreading.durable.SegmentJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DurableStageQueueTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysContainersTakenButNotAcknowledged() throws IOException, InterruptedException {
+        try (DurableStageQueue queue = open(4)) {
+            queue.put(new Container(1));
+            queue.put(new Container(2));
+            queue.put(new Container(3));
+            queue.put(StagePool.POISON_PILL);
+            queue.acknowledge(List.of(queue.take()));
+            // taken, but the stage died before it was done with it
+            queue.take();
+        }
+
+        try (DurableStageQueue queue = open(1)) {
+            assertEquals(List.of("Container-2", "Container-3"), names(queue.recovered()));
+            final List<Container> queued = new ArrayList<>();
+            queue.drainTo(queued);
+            assertEquals(queue.recovered(), queued);
+        }
+    }
+
+    @Test
+    void doesNotReplayContainersTheQueueRefused() throws IOException {
+        try (DurableStageQueue queue = open(1)) {
+            assertTrue(queue.offer(new Container(1)));
+            assertFalse(queue.offer(new Container(2)));
+        }
+
+        try (DurableStageQueue queue = open(1)) {
+            assertEquals(List.of("Container-1"), names(queue.recovered()));
+        }
+    }
+
+    private DurableStageQueue open(int capacity) throws IOException {
+        return new DurableStageQueue(new SegmentJournal(directory, 64 * 1024, FsyncPolicy.NEVER), capacity, ArrayBlockingQueue::new);
+    }
+
+    private static List<String> names(List<Container> containers) {
+        return containers.stream().map(Container::getName).toList();
+    }
+}
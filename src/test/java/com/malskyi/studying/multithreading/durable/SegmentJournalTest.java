@@ -0,0 +1,155 @@
+package com.malskyi.studying.multithreading.durable;
+
+import com.malskyi.studying.multithreading.Container;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentJournalTest {
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysOnlyUnacknowledgedContainersInAppendOrder() throws IOException {
+        try (SegmentJournal journal = open()) {
+            final long first = journal.append(new Container(1));
+            journal.append(new Container(2));
+            journal.append(new Container(3));
+            journal.acknowledge(first);
+        }
+
+        try (SegmentJournal journal = open()) {
+            assertEquals(List.of("Container-2", "Container-3"), names(journal.recovered()));
+            assertEquals(3, journal.append(new Container(4)));
+        }
+    }
+
+    @Test
+    void stopsReplayAtRecordWithBadChecksum() throws IOException {
+        try (SegmentJournal journal = open()) {
+            journal.append(new Container(1));
+            journal.append(new Container(2));
+            journal.append(new Container(3));
+        }
+        // the last record was only partly written: its length is there, but not all of its bytes
+        final Path segment = segments().getFirst();
+        final int last = recordOffsets(segment).getLast();
+        overwrite(segment, last + 20, (byte) 0x7f);
+
+        try (SegmentJournal journal = open()) {
+            assertEquals(List.of("Container-1", "Container-2"), names(journal.recovered()));
+        }
+    }
+
+    @Test
+    void stopsReplayAtRecordWithoutLength() throws IOException {
+        try (SegmentJournal journal = open()) {
+            journal.append(new Container(1));
+            journal.append(new Container(2));
+            journal.append(new Container(3));
+        }
+        // the length is written last, so a record the process died in the middle of has none
+        final Path segment = segments().getFirst();
+        final List<Integer> offsets = recordOffsets(segment);
+        overwrite(segment, offsets.get(1), (byte) 0, (byte) 0, (byte) 0, (byte) 0);
+
+        try (SegmentJournal journal = open()) {
+            assertEquals(List.of("Container-1"), names(journal.recovered()));
+        }
+    }
+
+    @Test
+    void deletesSegmentsOnceAllTheirContainersAreAcknowledged() throws IOException {
+        final long[] ids;
+        try (SegmentJournal journal = open()) {
+            ids = LongStream.range(0, 100).map(i -> journal.append(bulky((int) i))).toArray();
+            final int written = segments().size();
+            assertTrue(written >= 3, "expected the appends to span several segments, got " + written);
+
+            journal.acknowledge(LongStream.range(0, 90).map(i -> ids[(int) i]).toArray());
+            final List<Path> remaining = segments();
+            assertTrue(remaining.size() < written, "expected acknowledged segments to be deleted");
+            assertFalse(remaining.contains(directory.resolve(segmentName(0))));
+        }
+
+        try (SegmentJournal journal = open()) {
+            assertEquals(LongStream.range(90, 100).boxed().toList(),
+                    journal.recovered().stream().map(SegmentJournal.Entry::id).toList());
+            assertEquals(List.of("Container-90", "Container-99"),
+                    List.of(journal.recovered().getFirst().container().getName(), journal.recovered().getLast().container().getName()));
+            assertEquals(100, journal.append(new Container(100)));
+            journal.acknowledge(LongStream.range(90, 101).toArray());
+        }
+
+        try (SegmentJournal journal = open()) {
+            assertTrue(journal.recovered().isEmpty());
+            assertEquals(1, segments().size());
+        }
+    }
+
+    private SegmentJournal open() throws IOException {
+        return new SegmentJournal(directory, SEGMENT_SIZE, FsyncPolicy.NEVER);
+    }
+
+    /**
+     * A container of about 2 KB, so a few dozen fill a segment.
+     */
+    private static Container bulky(int id) {
+        final Container container = new Container(id);
+        container.setInitializedBy("x".repeat(2000));
+        return container;
+    }
+
+    private static List<String> names(List<SegmentJournal.Entry> entries) {
+        return entries.stream().map(entry -> entry.container().getName()).toList();
+    }
+
+    private static String segmentName(long number) {
+        return String.format("segment-%016d.log", number);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> listing = Files.list(directory)) {
+            return listing.sorted().toList();
+        }
+    }
+
+    /**
+     * Start of every record in a segment, by following the length of each.
+     */
+    private static List<Integer> recordOffsets(Path segment) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        final List<Integer> offsets = new ArrayList<>();
+        while (buffer.remaining() >= 2 * Integer.BYTES) {
+            final int length = buffer.getInt(buffer.position());
+            if (length <= 0) {
+                break;
+            }
+            offsets.add(buffer.position());
+            buffer.position(buffer.position() + 2 * Integer.BYTES + length);
+        }
+        return offsets;
+    }
+
+    private static void overwrite(Path file, int position, byte... bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}
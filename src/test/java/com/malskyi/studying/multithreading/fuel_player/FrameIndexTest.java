@@ -0,0 +1,121 @@
+package com.malskyi.studying.multithreading.fuel_player;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FrameIndexTest {
+    /**
+     * MPEG-1 layer III, 32 kbps, 48 kHz: 96 bytes and 1152 samples, i.e. exactly 24 ms, per frame.
+     */
+    private static final int LOW_BITRATE_HEADER = 0xFFFB1400;
+    /**
+     * MPEG-1 layer III, 320 kbps, 48 kHz: 960 bytes per frame.
+     */
+    private static final int HIGH_BITRATE_HEADER = 0xFFFBE400;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void computesFrameLengthPerVersionAndLayer() {
+        assertEquals(417, FrameIndex.frameLength(0xFFFB9000)); // MPEG-1 layer III, 128 kbps, 44.1 kHz
+        assertEquals(418, FrameIndex.frameLength(0xFFFB9200)); // same, padded
+        assertEquals(96, FrameIndex.frameLength(LOW_BITRATE_HEADER));
+        assertEquals(576, FrameIndex.frameLength(0xFFFDA400)); // MPEG-1 layer II, 192 kbps, 48 kHz
+        assertEquals(576, FrameIndex.frameLength(0xFFFFC800)); // MPEG-1 layer I, 384 kbps, 32 kHz
+        assertEquals(580, FrameIndex.frameLength(0xFFFFCA00)); // same, padded by one 4 byte slot
+        assertEquals(208, FrameIndex.frameLength(0xFFF38000)); // MPEG-2 layer III, 64 kbps, 22.05 kHz
+        assertEquals(72, FrameIndex.frameLength(0xFFE31800));  // MPEG-2.5 layer III, 8 kbps, 8 kHz
+    }
+
+    @Test
+    void rejectsInvalidHeaders() {
+        assertEquals(-1, FrameIndex.frameLength(0x7FFB9000)); // no sync word
+        assertEquals(-1, FrameIndex.frameLength(0xFFEB9000)); // reserved version
+        assertEquals(-1, FrameIndex.frameLength(0xFFF99000)); // reserved layer
+        assertEquals(-1, FrameIndex.frameLength(0xFFFB0000)); // free bitrate
+        assertEquals(-1, FrameIndex.frameLength(0xFFFBF000)); // bad bitrate
+        assertEquals(-1, FrameIndex.frameLength(0xFFFB9C00)); // reserved sample rate
+    }
+
+    @Test
+    void indexesFramesAfterId3Tag() throws IOException {
+        final FrameIndex index = FrameIndex.scan(write(LOW_BITRATE_HEADER, 50, 20));
+
+        assertEquals(50, index.frameCount());
+        assertEquals(48000, index.sampleRate());
+        assertEquals(2, index.channels());
+        assertEquals(1200, index.durationMillis());
+        assertEquals(20, index.all().offset());
+    }
+
+    @Test
+    void seeksToTheSample() throws IOException {
+        final FrameIndex index = FrameIndex.scan(write(LOW_BITRATE_HEADER, 50, 0));
+
+        // samples 12000 to 12480 all lie in frame 10, which starts at sample 11520
+        final FrameIndex.Seek inside = index.seek(250, 260);
+        assertEquals(1, inside.frames());
+        assertEquals(480, inside.startSample());
+        assertEquals(960, inside.endSample());
+
+        // a section on frame boundaries plays whole frames
+        final FrameIndex.Seek aligned = index.seek(240, 288);
+        assertEquals(2, aligned.frames());
+        assertEquals(0, aligned.startSample());
+        assertEquals(1152, aligned.endSample());
+        assertEquals(index.seek(240, 264).offset(), aligned.offset());
+    }
+
+    @Test
+    void clampsTheSectionToTheTrack() throws IOException {
+        final FrameIndex index = FrameIndex.scan(write(LOW_BITRATE_HEADER, 50, 0));
+
+        final FrameIndex.Seek fromStart = index.seek(-100, 24);
+        assertEquals(new FrameIndex.Seek(0, 0, 1, 0, 1152), fromStart);
+
+        final FrameIndex.Seek pastEnd = index.seek(1176, 5000);
+        assertEquals(1, pastEnd.frames());
+        assertEquals(1152, pastEnd.endSample());
+
+        assertEquals(0, index.seek(2000, 3000).frames());
+        assertEquals(0, index.seek(500, 400).frames());
+    }
+
+    @Test
+    void prerollCoversTheBitReservoir() throws IOException {
+        // a low bitrate frame holds 96 - 38 = 58 bytes of data at most, so 511 bytes take 9 frames
+        final FrameIndex low = FrameIndex.scan(write(LOW_BITRATE_HEADER, 50, 0));
+        assertEquals(new FrameIndex.Seek(96, 9, 1, 0, 1152), low.seek(240, 264));
+        // fewer frames than that before the section: start at the first one
+        assertEquals(new FrameIndex.Seek(0, 3, 1, 0, 1152), low.seek(72, 96));
+
+        final FrameIndex high = FrameIndex.scan(write(HIGH_BITRATE_HEADER, 50, 0));
+        assertEquals(new FrameIndex.Seek(9 * 960, 1, 1, 0, 1152), high.seek(240, 264));
+    }
+
+    /**
+     * Frames of silence with the given header, after an ID3v2 tag of {@code tagSize} bytes if not 0.
+     */
+    private Path write(int header, int frames, int tagSize) throws IOException {
+        final int length = FrameIndex.frameLength(header);
+        final ByteBuffer data = ByteBuffer.allocate(tagSize + frames * length);
+        if (tagSize > 0) {
+            data.put(new byte[]{'I', 'D', '3', 4, 0, 0, 0, 0, 0, (byte) (tagSize - 10)});
+            data.position(tagSize);
+        }
+        for (int i = 0; i < frames; i++) {
+            data.putInt(tagSize + i * length, header);
+        }
+        final Path file = directory.resolve("track.mp3");
+        Files.write(file, data.array());
+        return file;
+    }
+}